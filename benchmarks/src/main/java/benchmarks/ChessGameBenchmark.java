@@ -0,0 +1,112 @@
+package benchmarks;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import chess.InvalidMoveException;
+import chess.MoveList;
+import chess.PackedMove;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Game-level hot paths: legal move generation, check and checkmate detection, and making a move.
+ * <p>
+ * Run with {@code java -jar benchmarks/target/benchmarks.jar ChessGameBenchmark -prof gc}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ChessGameBenchmark {
+
+    @Param({Fixtures.OPENING, Fixtures.MIDDLEGAME, Fixtures.ENDGAME})
+    public String fixture;
+
+    private ChessGame game;
+    private ChessPosition[] sideToMove;
+    private ChessMove firstMove;
+    private final MoveList moves = new MoveList();
+
+    @Setup
+    public void setup() {
+        game = Fixtures.load(fixture);
+        long squares = game.getBoard().getOccupancy(game.getTeamTurn());
+        sideToMove = new ChessPosition[Long.bitCount(squares)];
+        for (int i = 0; squares != 0; i++) {
+            sideToMove[i] = ChessPosition.of(Long.numberOfTrailingZeros(squares));
+            squares &= squares - 1;
+        }
+        game.legalMoves(game.getTeamTurn(), moves);
+        firstMove = PackedMove.toChessMove(moves.get(0));
+    }
+
+    /**
+     * validMoves for every piece of the side to move, as a client asking for highlights would.
+     * The fixture never changes, so after the first call this measures the legal-move cache hit
+     */
+    @Benchmark
+    public int validMoves() {
+        int count = 0;
+        for (ChessPosition position : sideToMove) {
+            count += game.validMoves(position).size();
+        }
+        return count;
+    }
+
+    /**
+     * validMoves with the legal-move cache disabled, so every call generates the moves
+     */
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Dchess.moveCache.entries=0")
+    public int validMovesUncached() {
+        return validMoves();
+    }
+
+    /**
+     * Generation of every legal move of the side to move into a reused list, which bypasses the cache
+     */
+    @Benchmark
+    public int legalMoves() {
+        moves.clear();
+        game.legalMoves(game.getTeamTurn(), moves);
+        return moves.size();
+    }
+
+    @Benchmark
+    public boolean isInCheck() {
+        return game.isInCheck(game.getTeamTurn());
+    }
+
+    /**
+     * isInCheckmate on a fresh copy of the fixture, so the game's cached status is never reused;
+     * the legal-move cache is disabled too, leaving the check test and one move generation
+     */
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Dchess.moveCache.entries=0")
+    public boolean isInCheckmate(MoveState state) {
+        return state.game.isInCheckmate(state.game.getTeamTurn());
+    }
+
+    /**
+     * makeMove on a fresh copy of the fixture; building the copy is excluded from the timing
+     */
+    @Benchmark
+    public ChessGame makeMove(MoveState state) throws InvalidMoveException {
+        state.game.makeMove(firstMove);
+        return state.game;
+    }
+
+    @State(Scope.Thread)
+    public static class MoveState {
+        ChessGame game;
+
+        @Setup(Level.Invocation)
+        public void setup(ChessGameBenchmark benchmark) {
+            game = Fixtures.load(benchmark.fixture);
+        }
+    }
+}
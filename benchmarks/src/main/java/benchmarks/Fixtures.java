@@ -0,0 +1,38 @@
+package benchmarks;
+
+import chess.ChessGame;
+
+/**
+ * Fixed positions every benchmark runs against, so numbers stay comparable between runs.
+ */
+public final class Fixtures {
+    private Fixtures() {}
+
+    public static final String OPENING = "opening";
+    public static final String MIDDLEGAME = "middlegame";
+    public static final String ENDGAME = "endgame";
+
+    /**
+     * @param name one of {@link #OPENING}, {@link #MIDDLEGAME} or {@link #ENDGAME}
+     * @return a fresh game set up at that position, white to move
+     */
+    public static ChessGame load(String name) {
+        return ChessGame.fromFen(fen(name));
+    }
+
+    /**
+     * @param name one of {@link #OPENING}, {@link #MIDDLEGAME} or {@link #ENDGAME}
+     * @return the FEN of that position
+     */
+    public static String fen(String name) {
+        return switch (name) {
+            // Ruy Lopez after 1.e4 e5 2.Nf3 Nc6 3.Bb5 a6
+            case OPENING -> "r1bqkbnr/1ppp1ppp/p1n5/1B2p3/4P3/5N2/PPPP1PPP/RNBQK2R w KQkq - 0 4";
+            // "Kiwipete", a busy position with pins, checks and many captures
+            case MIDDLEGAME -> "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+            // rook and pawns, few pieces but long slider rays
+            case ENDGAME -> "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1";
+            default -> throw new IllegalArgumentException("Unknown fixture: " + name);
+        };
+    }
+}
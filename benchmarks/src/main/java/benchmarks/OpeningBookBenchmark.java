@@ -0,0 +1,100 @@
+package benchmarks;
+
+import chess.ChessGame;
+import chess.ChessPiece;
+import chess.MoveList;
+import chess.OpeningBook;
+import chess.OpeningBookBuilder;
+import chess.PackedMove;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Book lookups against a memory-mapped book of a few hundred thousand entries, built from
+ * random games plus the {@link Fixtures#OPENING} line.
+ * <p>
+ * Run with {@code java -jar benchmarks/target/benchmarks.jar OpeningBookBenchmark -prof gc}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OpeningBookBenchmark {
+
+    private static final int GAMES = 20_000;
+    private static final int PLIES = 16;
+
+    private Path file;
+    private OpeningBook book;
+    private ChessGame inBook;
+    private ChessGame notInBook;
+
+    @Setup
+    public void setup() throws IOException {
+        StringBuilder pgn = new StringBuilder("1. e4 e5 2. Nf3 Nc6 3. Bb5 a6 4. Ba4 Nf6 1-0\n\n");
+        SplittableRandom random = new SplittableRandom(11);
+        MoveList moves = new MoveList();
+        for (int g = 0; g < GAMES; g++) {
+            ChessGame game = new ChessGame();
+            for (int ply = 0; ply < PLIES; ply++) {
+                moves.clear();
+                game.legalMoves(game.getTeamTurn(), moves);
+                if (moves.isEmpty()) break;
+                int move = moves.get(random.nextInt(moves.size()));
+                pgn.append(san(game, move)).append(' ');
+                game.doMove(move);
+            }
+            pgn.append("1/2-1/2\n\n");
+        }
+
+        OpeningBookBuilder builder = new OpeningBookBuilder(PLIES);
+        builder.addPgn(new StringReader(pgn.toString()));
+        file = Files.createTempFile("book", ".bin");
+        builder.write(file);
+        book = OpeningBook.open(file);
+        inBook = Fixtures.load(Fixtures.OPENING);
+        notInBook = Fixtures.load(Fixtures.ENDGAME);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public List<OpeningBook.Entry> lookupHit() {
+        return book.lookup(inBook);
+    }
+
+    @Benchmark
+    public List<OpeningBook.Entry> lookupMiss() {
+        return book.lookup(notInBook);
+    }
+
+    // piece letter, start square and target square, which SAN readers accept and is never ambiguous
+    private static String san(ChessGame game, int move) {
+        ChessPiece piece = game.getBoard().getPiece(PackedMove.from(move));
+        String letters = "KQBNR";
+        StringBuilder san = new StringBuilder();
+        if (piece.getPieceType() != ChessPiece.PieceType.PAWN) {
+            san.append(letters.charAt(piece.getPieceType().ordinal()));
+        }
+        san.append(square(PackedMove.from(move))).append(square(PackedMove.to(move)));
+        ChessPiece.PieceType promotion = PackedMove.promotion(move);
+        if (promotion != null) san.append('=').append(letters.charAt(promotion.ordinal()));
+        return san.toString();
+    }
+
+    private static String square(int square) {
+        return "" + (char) ('a' + (square & 7)) + (char) ('1' + (square >>> 3));
+    }
+}
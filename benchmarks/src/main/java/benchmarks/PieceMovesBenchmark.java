@@ -0,0 +1,59 @@
+package benchmarks;
+
+import chess.ChessBoard;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ChessPiece.pieceMoves for each piece type, summed over every piece of that type in the fixture.
+ * <p>
+ * Run with {@code java -jar benchmarks/target/benchmarks.jar PieceMovesBenchmark -prof gc}
+ * to get allocation rates next to ns/op.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PieceMovesBenchmark {
+
+    @Param({Fixtures.OPENING, Fixtures.MIDDLEGAME, Fixtures.ENDGAME})
+    public String fixture;
+
+    @Param({"KING", "QUEEN", "BISHOP", "KNIGHT", "ROOK", "PAWN"})
+    public ChessPiece.PieceType type;
+
+    private ChessBoard board;
+    private ChessPosition[] positions;
+    private ChessPiece[] pieces;
+
+    @Setup
+    public void setup() {
+        board = Fixtures.load(fixture).getBoard();
+        long squares = board.getBitboard(chess.ChessGame.TeamColor.WHITE, type)
+                | board.getBitboard(chess.ChessGame.TeamColor.BLACK, type);
+        positions = new ChessPosition[Long.bitCount(squares)];
+        pieces = new ChessPiece[positions.length];
+        for (int i = 0; squares != 0; i++) {
+            int square = Long.numberOfTrailingZeros(squares);
+            squares &= squares - 1;
+            positions[i] = ChessPosition.of(square);
+            pieces[i] = board.getPiece(square);
+        }
+    }
+
+    @Benchmark
+    public int pieceMoves() {
+        int count = 0;
+        for (int i = 0; i < pieces.length; i++) {
+            Collection<?> moves = pieces[i].pieceMoves(board, positions[i]);
+            count += moves.size();
+        }
+        return count;
+    }
+}
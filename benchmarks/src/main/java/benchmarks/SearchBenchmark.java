@@ -0,0 +1,58 @@
+package benchmarks;
+
+import chess.ChessGame;
+import chess.SearchEngine;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Search speed per thread count. Each operation is a fixed-depth search; the "nodes"
+ * counter reports nodes per second summed over all search threads.
+ * <p>
+ * Run with {@code java -jar benchmarks/target/benchmarks.jar SearchBenchmark}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SearchBenchmark {
+
+    @Param({Fixtures.OPENING, Fixtures.MIDDLEGAME, Fixtures.ENDGAME})
+    public String fixture;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    @Param({"5"})
+    public int depth;
+
+    private ChessGame game;
+    private SearchEngine engine;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Counters {
+        public long nodes;
+    }
+
+    @Setup
+    public void setup() {
+        game = Fixtures.load(fixture);
+        engine = new SearchEngine(threads);
+    }
+
+    @TearDown
+    public void tearDown() {
+        engine.close();
+    }
+
+    @Benchmark
+    public SearchEngine.Result search(Counters counters) {
+        SearchEngine.Result result = engine.search(game, SearchEngine.Limits.depth(depth));
+        counters.nodes += result.nodes();
+        return result;
+    }
+}
@@ -0,0 +1,80 @@
+package benchmarks;
+
+import chess.BoardPrinter;
+import chess.ChessGame;
+import org.openjdk.jmh.annotations.*;
+import serialization.GameStateCodec;
+import serialization.GameStateDTO;
+import serialization.GameStateMapper;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converting games to and from their DTO and text forms, done on every move the server handles.
+ * <p>
+ * Run with {@code java -jar benchmarks/target/benchmarks.jar SerializationBenchmark -prof gc}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+
+    @Param({Fixtures.OPENING, Fixtures.MIDDLEGAME, Fixtures.ENDGAME})
+    public String fixture;
+
+    private ChessGame game;
+    private GameStateDTO dto;
+    private String fen;
+    private ByteBuffer buffer;
+    private byte[] bytes;
+
+    @Setup
+    public void setup() {
+        game = Fixtures.load(fixture);
+        dto = GameStateMapper.gameToDTO(game);
+        fen = game.toFen();
+        buffer = ByteBuffer.allocate(GameStateCodec.encodedSize(game));
+        bytes = GameStateCodec.toBytes(game);
+    }
+
+    @Benchmark
+    public GameStateDTO gameToDTO() {
+        return GameStateMapper.gameToDTO(game);
+    }
+
+    @Benchmark
+    public ChessGame dtoToGame() {
+        return GameStateMapper.dtoToGame(dto);
+    }
+
+    @Benchmark
+    public String toFen() {
+        return game.toFen();
+    }
+
+    @Benchmark
+    public ChessGame fromFen() {
+        return ChessGame.fromFen(fen);
+    }
+
+    @Benchmark
+    public ByteBuffer encodeBinary() {
+        buffer.clear();
+        GameStateCodec.encode(game, buffer);
+        return buffer;
+    }
+
+    @Benchmark
+    public ChessGame decodeBinary() {
+        return GameStateCodec.fromBytes(bytes);
+    }
+
+    @Benchmark
+    public String boardString() {
+        return BoardPrinter.boardString(game.getBoard());
+    }
+}
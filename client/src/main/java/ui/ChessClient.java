@@ -276,7 +276,7 @@ public class ChessClient implements NotificationHandler {
         int col = letter - 'a' + 1;
         int row = rankNumber - '0';
 
-        ChessPosition pos = new ChessPosition(row, col);
+        ChessPosition pos = ChessPosition.of(row, col);
 
         ChessGame game = GameStateMapper.dtoToGame(currentState);
         ChessPiece piece = game.getBoard().getPiece(pos);
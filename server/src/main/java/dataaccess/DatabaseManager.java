@@ -1,9 +1,13 @@
 package dataaccess;
 
+import serialization.GameStateCodec;
+
 import java.sql.*;
 import java.util.Properties;
 
 public class DatabaseManager {
+    // largest encoded game: the fixed fields plus a full 128-key position history
+    private static final int STATE_BIN_BYTES = GameStateCodec.MAX_BYTES;
     private static String databaseName;
     private static String dbUsername;
     private static String dbPassword;
@@ -129,11 +133,12 @@ public class DatabaseManager {
             status ENUM('OPEN','IN_PROGRESS','FINISHED','ABANDONED') NOT NULL DEFAULT 'OPEN',
             result ENUM('WHITE','BLACK','DRAW','UNDECIDED') NOT NULL DEFAULT 'UNDECIDED',
             state_json JSON NULL,
+            state_bin VARBINARY(%d) NULL,
             CONSTRAINT fk_games
                 FOREIGN KEY (creator_id) REFERENCES users(id)
                 ON DELETE RESTRICT ON UPDATE RESTRICT
         );
-    """;
+    """.formatted(STATE_BIN_BYTES);
 
         final String gamePlayers = """
         CREATE TABLE IF NOT EXISTS game_players (
@@ -181,6 +186,7 @@ public class DatabaseManager {
             execSilently(st, "ALTER TABLE `games` MODIFY `creator_id` INT NULL");
             execSilently(st, "ALTER TABLE `games` MODIFY `black_king_location` VARCHAR(5) NOT NULL DEFAULT 'e8'");
             execSilently(st, "ALTER TABLE `games` MODIFY `white_king_location` VARCHAR(5) NOT NULL DEFAULT 'e1'");
+            execSilently(st, "ALTER TABLE `games` ADD COLUMN `state_bin` VARBINARY(" + STATE_BIN_BYTES + ") NULL");
 
             execSilently(st, "DROP INDEX `game_id_user_id` ON `game_players`");
             execSilently(st, "DROP INDEX `uq_game_user` ON `game_players`");
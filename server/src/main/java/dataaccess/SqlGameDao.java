@@ -2,6 +2,7 @@ package dataaccess;
 
 import chess.ChessGame;
 import model.GameData;
+import serialization.GameStateCodec;
 
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -27,15 +28,14 @@ public class SqlGameDao implements GameDao {
     @Override
     public int createGame(String gameName) throws DataAccessException {
         final String insertGame = """
-                INSERT INTO games (creator_id, game_name, turn_color, black_king_location, white_king_location, status, result, state_json)
+                INSERT INTO games (creator_id, game_name, turn_color, black_king_location, white_king_location, status, result, state_bin)
                 VALUES (NULL, ?, 'WHITE', 'e8', 'e1', 'OPEN', 'UNDECIDED', ?)
                 """;
         try (var conn = getConnection(); var stmt = conn.prepareStatement(insertGame, Statement.RETURN_GENERATED_KEYS)) {
             var initial_game = new ChessGame();
-            var json = GSON.toJson(serialization.GameStateMapper.gameToDTO(initial_game));
 
             stmt.setString(1, gameName);
-            stmt.setString(2, json);
+            stmt.setBytes(2, GameStateCodec.toBytes(initial_game));
             stmt.executeUpdate();
 
             try (var rs = stmt.getGeneratedKeys()) {
@@ -220,13 +220,12 @@ public class SqlGameDao implements GameDao {
         }
     }
 
-    //saves a json string representing game to database given a game object
+    //saves the binary game state to database given a game object
     @Override
     public void saveGameState(int gameId, chess.ChessGame game) throws DataAccessException {
-        var json = GSON.toJson(serialization.GameStateMapper.gameToDTO(game));
-        final String sql = "UPDATE games SET state_json = ? WHERE id = ?";
+        final String sql = "UPDATE games SET state_bin = ?, state_json = NULL WHERE id = ?";
         try (var conn = getConnection(); var ps = conn.prepareStatement(sql)) {
-            ps.setString(1, json);
+            ps.setBytes(1, GameStateCodec.toBytes(game));
             ps.setInt(2, gameId);
             if (ps.executeUpdate() == 0) throw new DataAccessException("Error: game not found");
         } catch (java.sql.SQLException e) {
@@ -234,15 +233,23 @@ public class SqlGameDao implements GameDao {
         }
     }
 
-    //returns game loaded from database information
+    //returns game loaded from database information; rows saved before state_bin fall back to json
     @Override
     public chess.ChessGame loadGameState(int gameId) throws DataAccessException {
-        final String sql = "SELECT state_json FROM games WHERE id = ?";
+        final String sql = "SELECT state_bin, state_json FROM games WHERE id = ?";
         try (var conn = getConnection(); var ps = conn.prepareStatement(sql)) {
             ps.setInt(1, gameId);
             try (var rs = ps.executeQuery()) {
                 if (!rs.next()) throw new DataAccessException("Error: game not found");
-                var json = rs.getString(1);
+                var bytes = rs.getBytes(1);
+                if (bytes != null) {
+                    try {
+                        return GameStateCodec.fromBytes(bytes);
+                    } catch (IllegalArgumentException e) {
+                        throw new DataAccessException("Error: corrupt game state", e);
+                    }
+                }
+                var json = rs.getString(2);
                 if (json == null || json.isBlank()) return new chess.ChessGame();
                 var dto = GSON.fromJson(json, serialization.GameStateDTO.class);
                 return serialization.GameStateMapper.dtoToGame(dto);
@@ -419,7 +419,7 @@ public class WebSocketHandler implements WsConnectHandler, WsMessageHandler, WsC
             throw new IllegalArgumentException("invalid square: " + sq);
         }
 
-        return new ChessPosition(row, col);
+        return ChessPosition.of(row, col);
     }
 
 
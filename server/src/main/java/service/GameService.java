@@ -186,16 +186,33 @@ public class GameService {
             case BLACK -> gameData.blackUsername();
         };
 
+        // after the move it is the opponent's turn, so the status is theirs
         String statusNotification = null;
-        if (game.isInCheckmate(opponent)) {
-            statusNotification = opponentUsername + " is in checkmate";
-            String winner = (playerColor == ChessGame.TeamColor.WHITE) ? "WHITE" : "BLACK";
-            gameDao.updateGameStatus(gameId, "FINISHED", winner);
-        } else if (game.isInStalemate(opponent)) {
-            statusNotification = "Stalemate";
-            gameDao.updateGameStatus(gameId, "FINISHED", "DRAW");
-        } else if (game.isInCheck(opponent)) {
-            statusNotification = opponentUsername + " is in check";
+        switch (game.getGameStatus()) {
+            case CHECKMATE -> {
+                statusNotification = opponentUsername + " is in checkmate";
+                String winner = (playerColor == ChessGame.TeamColor.WHITE) ? "WHITE" : "BLACK";
+                gameDao.updateGameStatus(gameId, "FINISHED", winner);
+            }
+            case STALEMATE -> {
+                statusNotification = "Stalemate";
+                gameDao.updateGameStatus(gameId, "FINISHED", "DRAW");
+            }
+            case THREEFOLD_REPETITION -> {
+                statusNotification = "Draw by threefold repetition";
+                gameDao.updateGameStatus(gameId, "FINISHED", "DRAW");
+            }
+            case FIFTY_MOVE_RULE -> {
+                statusNotification = "Draw by the fifty-move rule";
+                gameDao.updateGameStatus(gameId, "FINISHED", "DRAW");
+            }
+            case INSUFFICIENT_MATERIAL -> {
+                statusNotification = "Draw by insufficient material";
+                gameDao.updateGameStatus(gameId, "FINISHED", "DRAW");
+            }
+            case CHECK -> statusNotification = opponentUsername + " is in check";
+            case NORMAL -> {
+            }
         }
 
         return new MoveResult(dto, moveNotification, statusNotification);
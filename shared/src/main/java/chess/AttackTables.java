@@ -0,0 +1,117 @@
+package chess;
+
+/**
+ * Per-square attack masks for the leaper pieces (knight, king) and for pawn captures.
+ * Each mask has one bit set for every square the piece attacks from the given
+ * square, using the same 0..63 indexing as {@link ChessBoard#squareIndex(int, int)}.
+ * The tables are built once when the class loads.
+ */
+public final class AttackTables {
+    private AttackTables() {}
+
+    private static final int[][] KNIGHT_DIRS = {{+1, +2}, {+1, -2}, {-1, +2}, {-1, -2}, {+2, +1}, {+2, -1}, {-2, +1}, {-2, -1}};
+    private static final int[][] KING_DIRS = {
+            {+1, 0}, {-1, 0}, {0, +1}, {0, -1},
+            {+1, +1}, {+1, -1}, {-1, +1}, {-1, -1}
+    };
+
+    private static final long[] KNIGHT_ATTACKS = new long[64];
+    private static final long[] KING_ATTACKS = new long[64];
+    // indexed by TeamColor ordinal, then square
+    private static final long[][] PAWN_ATTACKS = new long[2][64];
+    // squares strictly between two squares sharing a rank, file or diagonal, else 0
+    private static final long[][] BETWEEN = new long[64][64];
+    // the whole rank, file or diagonal through two aligned squares, else 0
+    private static final long[][] LINE = new long[64][64];
+
+    static {
+        for (int row = 1; row <= 8; row++) {
+            for (int col = 1; col <= 8; col++) {
+                int square = ChessBoard.squareIndex(row, col);
+                KNIGHT_ATTACKS[square] = mask(row, col, KNIGHT_DIRS);
+                KING_ATTACKS[square] = mask(row, col, KING_DIRS);
+                PAWN_ATTACKS[ChessGame.TeamColor.WHITE.ordinal()][square] = mask(row, col, new int[][]{{+1, -1}, {+1, +1}});
+                PAWN_ATTACKS[ChessGame.TeamColor.BLACK.ordinal()][square] = mask(row, col, new int[][]{{-1, -1}, {-1, +1}});
+                initLines(row, col);
+            }
+        }
+    }
+
+    private static void initLines(int row, int col) {
+        final int from = ChessBoard.squareIndex(row, col);
+        for (int[] dir : KING_DIRS) {
+            // the full line through this square along dir, both ways
+            long line = 1L << from;
+            for (int sign = -1; sign <= 1; sign += 2) {
+                int r = row + sign * dir[0];
+                int c = col + sign * dir[1];
+                while (ChessBoard.inBounds(r, c)) {
+                    line |= 1L << ChessBoard.squareIndex(r, c);
+                    r += sign * dir[0];
+                    c += sign * dir[1];
+                }
+            }
+
+            long between = 0L;
+            int r = row + dir[0];
+            int c = col + dir[1];
+            while (ChessBoard.inBounds(r, c)) {
+                int to = ChessBoard.squareIndex(r, c);
+                BETWEEN[from][to] = between;
+                LINE[from][to] = line;
+                between |= 1L << to;
+                r += dir[0];
+                c += dir[1];
+            }
+        }
+    }
+
+    private static long mask(int row, int col, int[][] dirs) {
+        long mask = 0L;
+        for (int[] dir : dirs) {
+            int targetRow = row + dir[0];
+            int targetCol = col + dir[1];
+            if (ChessBoard.inBounds(targetRow, targetCol)) {
+                mask |= 1L << ChessBoard.squareIndex(targetRow, targetCol);
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * @return squares a knight on the given square attacks
+     */
+    public static long knightAttacks(int square) {
+        return KNIGHT_ATTACKS[square];
+    }
+
+    /**
+     * @return squares a king on the given square attacks
+     */
+    public static long kingAttacks(int square) {
+        return KING_ATTACKS[square];
+    }
+
+    /**
+     * @return squares a pawn of the given color on the given square captures on
+     */
+    public static long pawnAttacks(ChessGame.TeamColor color, int square) {
+        return PAWN_ATTACKS[color.ordinal()][square];
+    }
+
+    /**
+     * @return squares strictly between two squares on a common rank, file or diagonal,
+     * or 0 if they are not aligned
+     */
+    public static long between(int from, int to) {
+        return BETWEEN[from][to];
+    }
+
+    /**
+     * @return every square on the rank, file or diagonal through both squares,
+     * or 0 if they are not aligned
+     */
+    public static long line(int from, int to) {
+        return LINE[from][to];
+    }
+}
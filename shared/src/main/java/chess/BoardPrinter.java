@@ -17,7 +17,7 @@ public final class BoardPrinter {
         for (int r = 8; r >= 1; r--) {
             sb.append(r).append(" ");
             for (int c = 1; c <= 8; c++) {
-                ChessPiece p = b.getPiece(new ChessPosition(r, c));
+                ChessPiece p = b.getPiece(ChessBoard.squareIndex(r, c));
                 sb.append(p == null ? '.' : symbol(p)).append(' ');
             }
             sb.append('\n');
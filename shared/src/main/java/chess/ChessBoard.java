@@ -1,21 +1,235 @@
 package chess;
 
 import java.util.Arrays;
-import java.util.Objects;
 
 /**
  * A chessboard that can hold and rearrange chess pieces.
  * <p>
+ * Pieces are kept twice: a 64-entry mailbox so getPiece can hand back the
+ * piece object, and one bitboard per color and piece type (plus occupancy
+ * masks) for set-based move generation. Square indexes run 0..63 with
+ * a1 = 0, h1 = 7 and a8 = 56, i.e. {@code (row - 1) * 8 + (col - 1)}.
+ * <p>
  * Note: You can add to this class, but you may not alter
  * signature of the existing methods.
  */
 public class ChessBoard {
 
-    final private ChessPiece[][] board = new ChessPiece[8][8];
+    private static final int PIECE_TYPES = ChessPiece.PieceType.values().length;
+
+    final private ChessPiece[] squares = new ChessPiece[64];
+    final private long[] pieceBitboards = new long[2 * PIECE_TYPES];
+    final private long[] colorOccupancy = new long[2];
+    private long occupied;
+    private long zobristKey;
+    // piece counts, MATERIAL_BITS per color and type in bitboardIndex order
+    private long materialSignature;
+    // tapered evaluation terms, the sums of PieceSquareTables over the pieces
+    private int middlegameScore;
+    private int endgameScore;
+    private int gamePhase;
+
+    private static final int MATERIAL_BITS = 5;
 
     public ChessBoard() {
     }
 
+    /**
+     * Creates an independent copy of a board. The bitboards and key are copied as flat
+     * arrays; each piece gets a new ChessPiece, since pieces remember their own square.
+     *
+     * @param other the board to copy
+     */
+    public ChessBoard(ChessBoard other) {
+        System.arraycopy(other.pieceBitboards, 0, pieceBitboards, 0, pieceBitboards.length);
+        System.arraycopy(other.colorOccupancy, 0, colorOccupancy, 0, colorOccupancy.length);
+        occupied = other.occupied;
+        zobristKey = other.zobristKey;
+        materialSignature = other.materialSignature;
+        middlegameScore = other.middlegameScore;
+        endgameScore = other.endgameScore;
+        gamePhase = other.gamePhase;
+
+        long pieces = occupied;
+        while (pieces != 0) {
+            int square = Long.numberOfTrailingZeros(pieces);
+            pieces &= pieces - 1;
+            ChessPiece piece = other.squares[square];
+            squares[square] = new ChessPiece(piece.getTeamColor(), piece.getPieceType(), ChessPosition.of(square));
+        }
+    }
+
+    /**
+     * @return the 0..63 square index for a 1-based row and column
+     */
+    public static int squareIndex(int row, int col) {
+        return (row - 1) * 8 + (col - 1);
+    }
+
+    static int bitboardIndex(ChessGame.TeamColor color, ChessPiece.PieceType type) {
+        return color.ordinal() * PIECE_TYPES + type.ordinal();
+    }
+
+    /**
+     * @return the squares holding pieces of the given color and type, one bit per square
+     */
+    public long getBitboard(ChessGame.TeamColor color, ChessPiece.PieceType type) {
+        return pieceBitboards[bitboardIndex(color, type)];
+    }
+
+    /**
+     * @return the squares holding any piece of the given color
+     */
+    public long getOccupancy(ChessGame.TeamColor color) {
+        return colorOccupancy[color.ordinal()];
+    }
+
+    /**
+     * @return the squares holding any piece
+     */
+    public long getOccupied() {
+        return occupied;
+    }
+
+    /**
+     * @return the Zobrist key of the pieces on this board, kept up to date on every change
+     */
+    public long getZobristKey() {
+        return zobristKey;
+    }
+
+    /**
+     * Gets the material signature: the number of pieces of every color and type packed
+     * into one long, kept up to date on every change. Boards with the same material have
+     * the same signature, so endgame classes can be recognized with a single comparison.
+     *
+     * @return the material signature
+     */
+    public long getMaterialSignature() {
+        return materialSignature;
+    }
+
+    /**
+     * @return the number of pieces of the given color and type on the board
+     */
+    public int getMaterialCount(ChessGame.TeamColor color, ChessPiece.PieceType type) {
+        return materialCount(materialSignature, color, type);
+    }
+
+    /**
+     * @param signature a signature from {@link #getMaterialSignature()}
+     * @return the number of pieces of the given color and type it counts
+     */
+    public static int materialCount(long signature, ChessGame.TeamColor color, ChessPiece.PieceType type) {
+        return (int) (signature >>> (MATERIAL_BITS * bitboardIndex(color, type))) & ((1 << MATERIAL_BITS) - 1);
+    }
+
+    /**
+     * @return the middlegame piece-square score of the board in centipawns, positive when
+     * white stands better; kept up to date on every change
+     */
+    public int getMiddlegameScore() {
+        return middlegameScore;
+    }
+
+    /**
+     * @return the endgame piece-square score of the board in centipawns, positive when
+     * white stands better; kept up to date on every change
+     */
+    public int getEndgameScore() {
+        return endgameScore;
+    }
+
+    /**
+     * @return the summed {@link PieceSquareTables#phaseWeight} of the pieces on the board;
+     * {@link PieceSquareTables#MAX_PHASE} at the start, more after early promotions
+     */
+    public int getGamePhase() {
+        return gamePhase;
+    }
+
+    /**
+     * Determines if any piece of the given team attacks a square. Looks outward from the
+     * square with the leaper tables and slider lookups and stops at the first attacker
+     * found, instead of generating the attacking team's moves.
+     *
+     * @param square the 0..63 index of the square
+     * @param byColor the attacking team
+     * @return True if a piece of byColor attacks the square
+     */
+    public boolean isSquareAttacked(int square, ChessGame.TeamColor byColor) {
+        final ChessGame.TeamColor defender = (byColor == ChessGame.TeamColor.WHITE)
+                ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+        // a pawn of byColor attacks this square exactly when a defending pawn here would capture onto it
+        if ((AttackTables.pawnAttacks(defender, square) & getBitboard(byColor, ChessPiece.PieceType.PAWN)) != 0) return true;
+        if ((AttackTables.knightAttacks(square) & getBitboard(byColor, ChessPiece.PieceType.KNIGHT)) != 0) return true;
+        if ((AttackTables.kingAttacks(square) & getBitboard(byColor, ChessPiece.PieceType.KING)) != 0) return true;
+
+        final long queens = getBitboard(byColor, ChessPiece.PieceType.QUEEN);
+        final long straight = getBitboard(byColor, ChessPiece.PieceType.ROOK) | queens;
+        final long diagonal = getBitboard(byColor, ChessPiece.PieceType.BISHOP) | queens;
+        return (straight != 0 && (rookAttacks(square, occupied) & straight) != 0)
+                || (diagonal != 0 && (bishopAttacks(square, occupied) & diagonal) != 0);
+    }
+
+    /**
+     * Finds every piece of a team attacking a square, given a board occupancy that may
+     * differ from the real one (e.g. with a king lifted off to test where it can step).
+     *
+     * @param square    the 0..63 index of the square
+     * @param byColor   the attacking team
+     * @param occupancy the occupied squares sliders are blocked by
+     * @return the squares of the attacking pieces
+     */
+    public long attackersTo(int square, ChessGame.TeamColor byColor, long occupancy) {
+        final ChessGame.TeamColor defender = (byColor == ChessGame.TeamColor.WHITE)
+                ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+        final long queens = getBitboard(byColor, ChessPiece.PieceType.QUEEN);
+        return (AttackTables.pawnAttacks(defender, square) & getBitboard(byColor, ChessPiece.PieceType.PAWN))
+                | (AttackTables.knightAttacks(square) & getBitboard(byColor, ChessPiece.PieceType.KNIGHT))
+                | (AttackTables.kingAttacks(square) & getBitboard(byColor, ChessPiece.PieceType.KING))
+                | (rookAttacks(square, occupancy) & (getBitboard(byColor, ChessPiece.PieceType.ROOK) | queens))
+                | (bishopAttacks(square, occupancy) & (getBitboard(byColor, ChessPiece.PieceType.BISHOP) | queens));
+    }
+
+    // slider attacks from the lookup ChessPiece.setMagicSliders selects
+    private static long rookAttacks(int square, long occupancy) {
+        return ChessPiece.usesMagicSliders()
+                ? SlidingAttacks.rookAttacks(square, occupancy) : SlidingAttacks.rookAttacksSlow(square, occupancy);
+    }
+
+    private static long bishopAttacks(int square, long occupancy) {
+        return ChessPiece.usesMagicSliders()
+                ? SlidingAttacks.bishopAttacks(square, occupancy) : SlidingAttacks.bishopAttacksSlow(square, occupancy);
+    }
+
+    //keeps the mailbox, piece bitboards, occupancy masks, Zobrist key and evaluation terms in step
+    private void setSquare(int square, ChessPiece piece) {
+        final long bit = 1L << square;
+        ChessPiece old = squares[square];
+        if (old != null) {
+            pieceBitboards[bitboardIndex(old.getTeamColor(), old.getPieceType())] &= ~bit;
+            colorOccupancy[old.getTeamColor().ordinal()] &= ~bit;
+            occupied &= ~bit;
+            zobristKey ^= Zobrist.pieceKey(old.getTeamColor(), old.getPieceType(), square);
+            materialSignature -= 1L << (MATERIAL_BITS * bitboardIndex(old.getTeamColor(), old.getPieceType()));
+            middlegameScore -= PieceSquareTables.middlegame(old.getTeamColor(), old.getPieceType(), square);
+            endgameScore -= PieceSquareTables.endgame(old.getTeamColor(), old.getPieceType(), square);
+            gamePhase -= PieceSquareTables.phaseWeight(old.getPieceType());
+        }
+        squares[square] = piece;
+        if (piece != null) {
+            pieceBitboards[bitboardIndex(piece.getTeamColor(), piece.getPieceType())] |= bit;
+            colorOccupancy[piece.getTeamColor().ordinal()] |= bit;
+            occupied |= bit;
+            zobristKey ^= Zobrist.pieceKey(piece.getTeamColor(), piece.getPieceType(), square);
+            materialSignature += 1L << (MATERIAL_BITS * bitboardIndex(piece.getTeamColor(), piece.getPieceType()));
+            middlegameScore += PieceSquareTables.middlegame(piece.getTeamColor(), piece.getPieceType(), square);
+            endgameScore += PieceSquareTables.endgame(piece.getTeamColor(), piece.getPieceType(), square);
+            gamePhase += PieceSquareTables.phaseWeight(piece.getPieceType());
+        }
+    }
+
     public static boolean inBounds(int row, int col) {
         boolean success = (row >= 1 && row <= 8) && (col >= 1 && col <= 8);
 //        if (!success) {
@@ -37,10 +251,7 @@ public class ChessBoard {
         if (!inBounds(r,c)) {
             throw new IllegalArgumentException("Out of bounds: row=" + r + "col=" + c);
         }
-        board[r- 1][c - 1] = piece;
-        if (piece != null) {
-            piece.setPiecePosition(position);
-        }
+        addPiece(squareIndex(r, c), piece);
     }
 
     /**
@@ -56,7 +267,30 @@ public class ChessBoard {
         if (!inBounds(r, c)) {
             throw new IndexOutOfBoundsException("Piece out of bounds at (" + r + ", " + c + ")");
         }
-        return board[r - 1][c - 1];
+        return squares[squareIndex(r, c)];
+    }
+
+    /**
+     * Adds a chess piece to the chessboard by square index
+     *
+     * @param square the 0..63 index of the square to add the piece to
+     * @param piece  the piece to add, or null to empty the square
+     */
+    public void addPiece(int square, ChessPiece piece) {
+        setSquare(square, piece);
+        if (piece != null) {
+            piece.setPiecePosition(ChessPosition.of(square));
+        }
+    }
+
+    /**
+     * Gets a chess piece on the chessboard by square index
+     *
+     * @param square the 0..63 index of the square
+     * @return Either the piece on the square, or null if it is empty
+     */
+    public ChessPiece getPiece(int square) {
+        return squares[square];
     }
 
     public void movePiece(ChessPosition startPosition, ChessPosition newPosition, ChessBoard board) {
@@ -76,11 +310,15 @@ public class ChessBoard {
      * (How the game of chess normally starts)
      */
     public void resetBoard() {
-        for (int r = 1; r <= 8; r++) {
-            for (int c = 1; c <= 8; c++) {
-                addPiece(new ChessPosition(r, c), null);
-            }
-        }
+        Arrays.fill(squares, null);
+        Arrays.fill(pieceBitboards, 0L);
+        Arrays.fill(colorOccupancy, 0L);
+        occupied = 0L;
+        zobristKey = 0L;
+        materialSignature = 0L;
+        middlegameScore = 0;
+        endgameScore = 0;
+        gamePhase = 0;
 
         final ChessPiece.PieceType[] BackRow = {
                 ChessPiece.PieceType.ROOK,
@@ -95,14 +333,14 @@ public class ChessBoard {
 
         // add white pieces
         for (int c = 1; c <= 8; c++){
-            addPiece(new ChessPosition(1, c), new ChessPiece(ChessGame.TeamColor.WHITE, BackRow[c-1], new ChessPosition(1, c)));
-            addPiece(new ChessPosition(2, c), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN, new ChessPosition(2, c)));
+            addPiece(ChessPosition.of(1, c), new ChessPiece(ChessGame.TeamColor.WHITE, BackRow[c-1], ChessPosition.of(1, c)));
+            addPiece(ChessPosition.of(2, c), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN, ChessPosition.of(2, c)));
         }
 
         // add black pieces
         for (int c = 1; c <= 8; c++) {
-            addPiece(new ChessPosition(8, c), new ChessPiece(ChessGame.TeamColor.BLACK, BackRow[c-1], new ChessPosition(8, c)));
-            addPiece(new ChessPosition(7, c), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.PAWN, new ChessPosition(7, c)));
+            addPiece(ChessPosition.of(8, c), new ChessPiece(ChessGame.TeamColor.BLACK, BackRow[c-1], ChessPosition.of(8, c)));
+            addPiece(ChessPosition.of(7, c), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.PAWN, ChessPosition.of(7, c)));
         }
     }
 
@@ -111,12 +349,15 @@ public class ChessBoard {
         if (!(o instanceof ChessBoard that)) {
             return false;
         }
-        return Objects.deepEquals(board, that.board);
+        if (zobristKey != that.zobristKey) {
+            return false;
+        }
+        return Arrays.equals(pieceBitboards, that.pieceBitboards);
     }
 
     @Override
     public int hashCode() {
-        return Arrays.deepHashCode(board);
+        return Long.hashCode(zobristKey);
     }
 }
 
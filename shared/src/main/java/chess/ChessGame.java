@@ -1,8 +1,7 @@
 package chess;
 
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashSet;
-import java.util.Iterator;
 import java.util.Objects;
 
 /**
@@ -17,16 +16,104 @@ public class ChessGame {
     private ChessBoard board;
     private ChessPiece blackKing;
     private ChessPiece whiteKing;
+    // castling rights, en passant target and clocks, packed with PackedState
+    private int state = PackedState.INITIAL;
+
+    // castling rights kept after a move touches each square: moving the king or a rook,
+    // or capturing on a rook's home square, drops the matching rights
+    private static final int[] CASTLING_MASK = new int[64];
+
+    static {
+        Arrays.fill(CASTLING_MASK, PackedState.ALL_CASTLING);
+        CASTLING_MASK[ChessBoard.squareIndex(1, 5)] &= ~PackedState.castlingRights(TeamColor.WHITE);
+        CASTLING_MASK[ChessBoard.squareIndex(1, 8)] &= ~PackedState.WHITE_KINGSIDE;
+        CASTLING_MASK[ChessBoard.squareIndex(1, 1)] &= ~PackedState.WHITE_QUEENSIDE;
+        CASTLING_MASK[ChessBoard.squareIndex(8, 5)] &= ~PackedState.castlingRights(TeamColor.BLACK);
+        CASTLING_MASK[ChessBoard.squareIndex(8, 8)] &= ~PackedState.BLACK_KINGSIDE;
+        CASTLING_MASK[ChessBoard.squareIndex(8, 1)] &= ~PackedState.BLACK_QUEENSIDE;
+    }
+
+    // undo stack for doMove/undoMove; the arrays are reused and only grow. The moved and
+    // captured pieces are the board's own objects, so undoing puts back exactly what was there
+    private static final int UNDO_CAPACITY = 32;
+    private int undoDepth;
+    private int[] undoMoves = new int[UNDO_CAPACITY];
+    private ChessPiece[] undoMoved = new ChessPiece[UNDO_CAPACITY];
+    private ChessPiece[] undoCaptured = new ChessPiece[UNDO_CAPACITY];
+    private int[] undoStates = new int[UNDO_CAPACITY];
+    // per undo slot, one reusable piece for each color and promotion type, so promoting in a
+    // search allocates only the first time; see promotionPiece
+    private static final int PROMOTION_KINDS = 8;
+    private ChessPiece[] promotionPieces = new ChessPiece[UNDO_CAPACITY * PROMOTION_KINDS];
+    // the history key each move's push overwrote and the history size before it
+    private long[] undoEvictedKeys = new long[UNDO_CAPACITY];
+    private int[] undoHistorySizes = new int[UNDO_CAPACITY];
+
+    /**
+     * Most earlier positions kept for repetition detection, and so the longest
+     * {@link #getPositionHistory}; a power of two above the 100 plies the fifty-move rule allows
+     */
+    public static final int HISTORY_CAPACITY = 128;
+    // keys of the positions before each move played, newest at historyPly - 1
+    private long[] history = new long[HISTORY_CAPACITY];
+    private int historyPly;
+    private int historySize;
+    private static final int FIFTY_MOVE_PLIES = 100;
+
+    // scratch buffer for legality checks inside this game
+    private final MoveList scratchMoves = new MoveList();
+
+    // status of the side to move, valid while the position key still equals statusKey
+    private GameStatus cachedStatus;
+    private long statusKey;
 
     public ChessGame() {
         this.board = new ChessBoard();
         board.resetBoard();
 
-        this.blackKing = board.getPiece(new ChessPosition(8,5));
-        this.whiteKing = board.getPiece(new ChessPosition(1,5));
+        this.blackKing = board.getPiece(ChessPosition.of(8,5));
+        this.whiteKing = board.getPiece(ChessPosition.of(1,5));
+        this.turnColor = TeamColor.WHITE;
+    }
+
+    /**
+     * Creates a game at the given board with white to move, without setting up the
+     * starting position first. The state is inferred as in {@link #setBoard}.
+     *
+     * @param board the board to play on
+     */
+    public ChessGame(ChessBoard board) {
+        setBoard(board);
         this.turnColor = TeamColor.WHITE;
     }
 
+    private ChessGame(ChessGame other) {
+        this.board = new ChessBoard(other.board);
+        this.turnColor = other.turnColor;
+        this.state = other.state;
+        this.history = other.history.clone();
+        this.historyPly = other.historyPly;
+        this.historySize = other.historySize;
+        this.whiteKing = findKing(TeamColor.WHITE);
+        this.blackKing = findKing(TeamColor.BLACK);
+    }
+
+    /**
+     * Creates an independent copy of this game: same board, turn, state and king references,
+     * sharing no mutable state with the original. Moves taken with doMove are part of
+     * the copied position but can't be undone on the copy.
+     *
+     * @return the copy
+     */
+    public ChessGame copy() {
+        return new ChessGame(this);
+    }
+
+    private ChessPiece findKing(TeamColor color) {
+        long kings = board.getBitboard(color, ChessPiece.PieceType.KING);
+        return (kings == 0) ? null : board.getPiece(Long.numberOfTrailingZeros(kings));
+    }
+
     public static void main(String[] args) throws InvalidMoveException {
         ChessGame game = new ChessGame();
 
@@ -59,6 +146,62 @@ public class ChessGame {
         this.turnColor = team;
     }
 
+    /**
+     * Gets the castling rights, en passant target and move clocks packed with
+     * {@link PackedState}
+     *
+     * @return the state word
+     */
+    public int getState() {
+        return state;
+    }
+
+    /**
+     * Replaces the castling rights, en passant target and move clocks, e.g. when
+     * restoring a saved game. Call it after {@link #setBoard}, which infers the state.
+     *
+     * @param state a state word packed with {@link PackedState}
+     */
+    public void setState(int state) {
+        this.state = state;
+    }
+
+    /**
+     * Writes the position as a FEN string, e.g.
+     * {@code rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1}
+     *
+     * @return the FEN of the current position
+     */
+    public String toFen() {
+        return Fen.format(this);
+    }
+
+    /**
+     * Creates a game from a FEN string. The halfmove and fullmove fields may be left out,
+     * and an en passant target no pawn can take is dropped.
+     *
+     * @param fen the position to set up
+     * @return a new game at that position, with no earlier positions to repeat
+     * @throws IllegalArgumentException if the string is not valid FEN
+     */
+    public static ChessGame fromFen(String fen) {
+        return Fen.parse(fen);
+    }
+
+    /**
+     * Gets a 64-bit key identifying the position: the board's Zobrist key combined
+     * with the side to move, the castling rights and the en passant file. Equal
+     * positions always have equal keys; the move clocks are not part of it.
+     *
+     * @return the Zobrist key of this position
+     */
+    public long getZobristKey() {
+        long key = board.getZobristKey()
+                ^ Zobrist.castlingKey(PackedState.castling(state))
+                ^ Zobrist.enPassantKey(PackedState.enPassant(state));
+        return (turnColor == TeamColor.BLACK) ? key ^ Zobrist.BLACK_TO_MOVE : key;
+    }
+
     /**
      * Enum identifying the 2 possible teams in a chess game
      */
@@ -67,88 +210,372 @@ public class ChessGame {
         BLACK
     }
 
-    public void setBlackKing(ChessPiece king) {
-        this.blackKing = king;
+    /**
+     * Outcome of the position for the side to move
+     */
+    public enum GameStatus {
+        NORMAL,
+        CHECK,
+        CHECKMATE,
+        STALEMATE,
+        THREEFOLD_REPETITION,
+        FIFTY_MOVE_RULE,
+        INSUFFICIENT_MATERIAL;
+
+        /**
+         * @return true if the game ends in a draw
+         */
+        public boolean isDraw() {
+            return this != NORMAL && this != CHECK && this != CHECKMATE;
+        }
     }
 
-    public void setWhiteKing(ChessPiece king) {
-        this.whiteKing = king;
+    /**
+     * Evaluates the position for the team whose turn it is in one pass: one check test
+     * and one legal move generation. The result is cached until the position changes,
+     * so repeated calls after a move are free. A checkmate or stalemate takes precedence;
+     * otherwise the game is drawn when neither side has the material to mate, once 100
+     * plies pass without a capture or pawn move, or when the position occurs for the third
+     * time with the same side to move.
+     * <p>
+     * Over the board a player has to claim the fifty-move and threefold repetition draws;
+     * here they apply as soon as they occur, on purpose, since the server has no way to
+     * claim a draw and ends the game on any drawn status.
+     *
+     * @return the status of the side to move
+     */
+    public GameStatus getGameStatus() {
+        GameStatus status = positionStatus();
+        if (status == GameStatus.CHECKMATE || status == GameStatus.STALEMATE) return status;
+        if (isInsufficientMaterial()) return GameStatus.INSUFFICIENT_MATERIAL;
+        if (PackedState.halfmoveClock(state) >= FIFTY_MOVE_PLIES) return GameStatus.FIFTY_MOVE_RULE;
+        if (repetitions() >= 2) return GameStatus.THREEFOLD_REPETITION;
+        return status;
     }
 
-    private static class MoveSnapshot {
-        ChessPosition start, end;
-        ChessPiece targetBeforeMove;
-        ChessPiece movingPiece;
-        boolean promoted;
-        ChessPiece.PieceType promotedTo;
+    // check, mate or stalemate, which depend on the position alone
+    private GameStatus positionStatus() {
+        final long key = getZobristKey();
+        if (cachedStatus != null && statusKey == key) {
+            return cachedStatus;
+        }
+
+        final boolean inCheck = isInCheck(turnColor);
+        final boolean noMoves = sideToMoveMoves().length == 0;
+
+        GameStatus status;
+        if (noMoves) {
+            status = inCheck ? GameStatus.CHECKMATE : GameStatus.STALEMATE;
+        } else {
+            status = inCheck ? GameStatus.CHECK : GameStatus.NORMAL;
+        }
+        cachedStatus = status;
+        statusKey = key;
+        return status;
     }
 
-    private MoveSnapshot simulateMove(ChessMove move) {
-        ChessPosition start = move.getStartPosition();
-        ChessPosition end = move.getEndPosition();
-        ChessPiece mover = board.getPiece(start);
-        if (mover == null) return null;
+    private static final long DARK_SQUARES = 0xAA55AA55AA55AA55L;
 
+    /**
+     * Determines if neither team can possibly checkmate: only kings are left, or a
+     * single knight or bishop besides them, or only bishops that all stand on squares
+     * of one color. Reads the board's material signature, so it costs the same after
+     * every move.
+     *
+     * @return True if the position is a dead draw by material
+     */
+    public boolean isInsufficientMaterial() {
+        final long signature = board.getMaterialSignature();
+        int knights = 0;
+        int bishops = 0;
+        for (TeamColor color : TeamColor.values()) {
+            if (ChessBoard.materialCount(signature, color, ChessPiece.PieceType.PAWN) != 0
+                    || ChessBoard.materialCount(signature, color, ChessPiece.PieceType.ROOK) != 0
+                    || ChessBoard.materialCount(signature, color, ChessPiece.PieceType.QUEEN) != 0) {
+                return false;
+            }
+            knights += ChessBoard.materialCount(signature, color, ChessPiece.PieceType.KNIGHT);
+            bishops += ChessBoard.materialCount(signature, color, ChessPiece.PieceType.BISHOP);
+        }
+        if (knights + bishops <= 1) return true;
+        if (knights != 0) return false;
 
-        MoveSnapshot snap = new MoveSnapshot();
-        snap.start = start;
-        snap.end = end;
-        snap.targetBeforeMove = board.getPiece(end);
-        snap.movingPiece = mover;
+        final long bishopSquares = board.getBitboard(TeamColor.WHITE, ChessPiece.PieceType.BISHOP)
+                | board.getBitboard(TeamColor.BLACK, ChessPiece.PieceType.BISHOP);
+        return (bishopSquares & DARK_SQUARES) == 0 || (bishopSquares & ~DARK_SQUARES) == 0;
+    }
 
-        board.movePiece(start, end, board);
+    /**
+     * Counts earlier occurrences of the current position with the same side to move,
+     * looking back no further than the last capture or pawn move
+     *
+     * @return how many times the position occurred before
+     */
+    public int repetitions() {
+        final long key = getZobristKey();
+        final int limit = Math.min(PackedState.halfmoveClock(state), historySize);
+        int count = 0;
+        for (int back = 2; back <= limit; back += 2) {
+            if (history[(historyPly - back) & (HISTORY_CAPACITY - 1)] == key) count++;
+        }
+        return count;
+    }
 
+    /**
+     * Gets the keys of the positions since the last capture or pawn move, so a saved
+     * game can still detect repetitions once restored with {@link #setPositionHistory}
+     *
+     * @return the position keys, oldest first, excluding the current position
+     */
+    public long[] getPositionHistory() {
+        final int size = Math.min(PackedState.halfmoveClock(state), historySize);
+        long[] keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = history[(historyPly - size + i) & (HISTORY_CAPACITY - 1)];
+        }
+        return keys;
+    }
 
-        if (mover.getPieceType() == ChessPiece.PieceType.KING) {
-            if (mover.getTeamColor() == TeamColor.WHITE) whiteKing = mover;
-            else blackKing = mover;
+    /**
+     * Replaces the history of earlier positions used for repetition detection
+     *
+     * @param keys position keys as returned by {@link #getPositionHistory}, oldest first
+     */
+    public void setPositionHistory(long[] keys) {
+        historyPly = 0;
+        historySize = 0;
+        for (long key : keys) {
+            pushHistory(key);
         }
+    }
 
+    private void pushHistory(long key) {
+        history[historyPly++ & (HISTORY_CAPACITY - 1)] = key;
+        if (historySize < HISTORY_CAPACITY) historySize++;
+    }
 
-        // Handle promotion
-        ChessPiece moved = board.getPiece(end);
-        boolean reachedBackRank = (end.getRow() == 8 || end.getRow() == 1);
+    public void setBlackKing(ChessPiece king) {
+        this.blackKing = king;
+    }
 
-        //Can't promote to King or Pawn
-        if (move.getPromotionPiece() != null) {
-            var promotedPiece = move.getPromotionPiece();
-            if (promotedPiece == ChessPiece.PieceType.KING || promotedPiece == ChessPiece.PieceType.PAWN) {
-                throw new RuntimeException("Invalid promotion piece");
-            }
+    public void setWhiteKing(ChessPiece king) {
+        this.whiteKing = king;
+    }
+
+    /**
+     * Plays a move on the board without validating it and pushes what is needed to
+     * take it back onto the undo stack. The move must be one generated by
+     * {@link ChessPiece#pieceMoves} or a castling or en passant move from
+     * {@link #validMoves}; the turn passes to the other team and the state word is updated.
+     *
+     * @param move the move to play
+     */
+    public void doMove(ChessMove move) {
+        doMove(PackedMove.fromChessMove(move));
+    }
+
+    /**
+     * Same as {@link #doMove(ChessMove)} for a move packed with {@link PackedMove}
+     *
+     * @param move the packed move to play
+     */
+    public void doMove(int move) {
+        final int from = PackedMove.from(move);
+        final int to = PackedMove.to(move);
+        ChessPiece mover = board.getPiece(from);
+        if (mover == null) {
+            throw new IllegalArgumentException("No piece at square " + from);
         }
 
-        //if piece == pawn, promote
-        if (moved != null && moved.getPieceType() == ChessPiece.PieceType.PAWN) {
-            if (reachedBackRank) {
-                if (move.getPromotionPiece() == null) {
-                    throw new RuntimeException("Pawn must promote");
-                }
-                board.addPiece(end, new ChessPiece(moved.getTeamColor(), move.getPromotionPiece(), end));
-                snap.promoted = true;
-                snap.promotedTo = move.getPromotionPiece();
+        if (undoDepth == undoMoved.length) {
+            growUndoStack();
+        }
+        final int i = undoDepth++;
+        undoEvictedKeys[i] = history[historyPly & (HISTORY_CAPACITY - 1)];
+        undoHistorySizes[i] = historySize;
+        pushHistory(getZobristKey());
+        final TeamColor color = mover.getTeamColor();
+        final ChessPiece.PieceType type = mover.getPieceType();
+        final int enPassant = PackedState.enPassant(state);
+        undoMoves[i] = move;
+        undoMoved[i] = mover;
+        undoStates[i] = state;
+
+        ChessPiece captured;
+        if (type == ChessPiece.PieceType.PAWN && to == enPassant && enPassant != 0) {
+            final int victim = enPassantVictim(from, to);
+            captured = board.getPiece(victim);
+            board.addPiece(victim, null);
+        } else {
+            captured = board.getPiece(to);
+        }
+        undoCaptured[i] = captured;
+
+        board.addPiece(from, null);
+        if (PackedMove.isPromotion(move)) {
+            board.addPiece(to, promotionPiece(i, color, PackedMove.promotion(move)));
+        } else {
+            board.addPiece(to, mover);
+        }
+        if (type == ChessPiece.PieceType.KING && Math.abs(to - from) == 2) {
+            moveCastlingRook(from, to, false);
+        }
+
+        // a double push only leaves a target when an enemy pawn could take it
+        int newEnPassant = 0;
+        if (type == ChessPiece.PieceType.PAWN && Math.abs(to - from) == 16) {
+            final int target = (from + to) >>> 1;
+            if ((AttackTables.pawnAttacks(color, target) & board.getBitboard(opposite(color), ChessPiece.PieceType.PAWN)) != 0) {
+                newEnPassant = target;
             }
-        } else if (move.getPromotionPiece() != null) {
-            throw new RuntimeException("Can't promote at that row");
         }
+        final int halfmove = (type == ChessPiece.PieceType.PAWN || captured != null)
+                ? 0 : PackedState.halfmoveClock(state) + 1;
+        final int fullmove = PackedState.fullmoveNumber(state) + (color == TeamColor.BLACK ? 1 : 0);
+        state = PackedState.encode(PackedState.castling(state) & CASTLING_MASK[from] & CASTLING_MASK[to],
+                newEnPassant, halfmove, fullmove);
+        turnColor = opposite(turnColor);
+    }
+
+    /**
+     * Takes back the last move played with {@link #doMove}, restoring the captured
+     * piece, the un-promoted pawn and the turn.
+     */
+    public void undoMove() {
+        if (undoDepth == 0) {
+            throw new IllegalStateException("No move to undo");
+        }
+        final int i = --undoDepth;
+        final int from = PackedMove.from(undoMoves[i]);
+        final int to = PackedMove.to(undoMoves[i]);
+        final ChessPiece mover = undoMoved[i];
+        state = undoStates[i];
+
+        board.addPiece(from, mover);
+        final int enPassant = PackedState.enPassant(state);
+        if (mover.getPieceType() == ChessPiece.PieceType.PAWN && to == enPassant && enPassant != 0) {
+            board.addPiece(to, null);
+            board.addPiece(enPassantVictim(from, to), undoCaptured[i]);
+        } else {
+            board.addPiece(to, undoCaptured[i]);
+        }
+        if (mover.getPieceType() == ChessPiece.PieceType.KING && Math.abs(to - from) == 2) {
+            moveCastlingRook(from, to, true);
+        }
+        clearUndoEntry(i);
+        // puts back the key a full ring lost to this move, so no history is lost to a search
+        historyPly--;
+        history[historyPly & (HISTORY_CAPACITY - 1)] = undoEvictedKeys[i];
+        historySize = undoHistorySizes[i];
+        turnColor = opposite(turnColor);
+    }
 
-        return snap;
+    // the pawn taken en passant stands beside the capturing pawn, on the target's file
+    private static int enPassantVictim(int from, int to) {
+        return (from & ~7) | (to & 7);
     }
 
+    // moves the rook of a castling move across the king, or back when undoing it
+    private void moveCastlingRook(int kingFrom, int kingTo, boolean undo) {
+        final boolean kingside = kingTo > kingFrom;
+        final int home = kingside ? kingTo + 1 : kingTo - 2;
+        final int castled = kingside ? kingTo - 1 : kingTo + 1;
+        final int source = undo ? castled : home;
+        final int target = undo ? home : castled;
+        ChessPiece rook = board.getPiece(source);
+        board.addPiece(source, null);
+        board.addPiece(target, rook);
+    }
 
-    private void undoSimulatedMove(MoveSnapshot snap) {
-        if (snap == null) return;
+    private void clearUndoEntry(int i) {
+        undoMoved[i] = null;
+        undoCaptured[i] = null;
+    }
 
-        if (snap.promoted) {
-            board.addPiece(snap.end, snap.movingPiece);
+    // the promoted piece for undo slot i; only on the board while that slot's move is played
+    private ChessPiece promotionPiece(int i, TeamColor color, ChessPiece.PieceType type) {
+        final int index = promotionIndex(i, color, type);
+        ChessPiece piece = promotionPieces[index];
+        if (piece == null) {
+            piece = new ChessPiece(color, type);
+            promotionPieces[index] = piece;
         }
+        return piece;
+    }
 
-        board.movePiece(snap.end, snap.start, board);
+    // a move made final keeps its promoted piece on the board, so the slot must not hand it out again
+    private void releasePromotionPiece(int i, int move) {
+        if (!PackedMove.isPromotion(move)) return;
+        final ChessPiece.PieceType type = PackedMove.promotion(move);
+        final ChessPiece placed = board.getPiece(PackedMove.to(move));
+        promotionPieces[promotionIndex(i, placed.getTeamColor(), type)] = null;
+    }
+
+    private static int promotionIndex(int i, TeamColor color, ChessPiece.PieceType type) {
+        // promotion types are QUEEN..ROOK, ordinals 1..4
+        return i * PROMOTION_KINDS + color.ordinal() * 4 + type.ordinal() - 1;
+    }
+
+    private void growUndoStack() {
+        final int capacity = undoMoved.length * 2;
+        undoMoves = Arrays.copyOf(undoMoves, capacity);
+        undoMoved = Arrays.copyOf(undoMoved, capacity);
+        undoCaptured = Arrays.copyOf(undoCaptured, capacity);
+        undoStates = Arrays.copyOf(undoStates, capacity);
+        promotionPieces = Arrays.copyOf(promotionPieces, capacity * PROMOTION_KINDS);
+        undoEvictedKeys = Arrays.copyOf(undoEvictedKeys, capacity);
+        undoHistorySizes = Arrays.copyOf(undoHistorySizes, capacity);
+    }
+
+    static int kingHome(TeamColor color) {
+        return (color == TeamColor.WHITE) ? ChessBoard.squareIndex(1, 5) : ChessBoard.squareIndex(8, 5);
+    }
 
-        if (snap.targetBeforeMove != null) {
-            board.addPiece(snap.end, snap.targetBeforeMove);
+    /**
+     * Appends the castling moves of a king, fully checked: the right is still held,
+     * the rook is home, the squares between are empty, and the king is not in check
+     * and does not pass through or land on an attacked square
+     *
+     * @param color the king's team
+     * @param king  the king's square; nothing is appended unless it is the home square
+     * @param moves the list to append to
+     */
+    void castlingMoves(TeamColor color, int king, MoveList moves) {
+        final int rights = PackedState.castling(state) & PackedState.castlingRights(color);
+        if (rights == 0 || king != kingHome(color)) return;
+
+        final TeamColor them = opposite(color);
+        if (board.isSquareAttacked(king, them)) return;
+        final long rooks = board.getBitboard(color, ChessPiece.PieceType.ROOK);
+        final long occupied = board.getOccupied();
+
+        final int kingside = (color == TeamColor.WHITE) ? PackedState.WHITE_KINGSIDE : PackedState.BLACK_KINGSIDE;
+        if ((rights & kingside) != 0 && canCastle(king, king + 3, 1, them, rooks, occupied)) {
+            moves.add(PackedMove.encode(king, king + 2, null));
+        }
+        if ((rights & ~kingside) != 0 && canCastle(king, king - 4, -1, them, rooks, occupied)) {
+            moves.add(PackedMove.encode(king, king - 2, null));
         }
     }
 
+    private boolean canCastle(int king, int rook, int step, TeamColor them, long rooks, long occupied) {
+        return (rooks & (1L << rook)) != 0
+                && (AttackTables.between(king, rook) & occupied) == 0
+                && !board.isSquareAttacked(king + step, them)
+                && !board.isSquareAttacked(king + 2 * step, them);
+    }
+
+    /**
+     * @return the square a pawn of the side to move can capture en passant on, or 0 for none
+     */
+    int getEnPassantSquare() {
+        return PackedState.enPassant(state);
+    }
+
+    static TeamColor opposite(TeamColor color) {
+        return (color == TeamColor.WHITE) ? TeamColor.BLACK : TeamColor.WHITE;
+    }
+
 
     /**
      * Gets a valid moves for a piece at the given location
@@ -160,44 +587,125 @@ public class ChessGame {
      * Additionally, a move is valid if:
      * 1. The move falls within that piece's moves collection
      * 2. It doesn't leave your king in check.
-     *
+     * <p>
+     * Moves come from the pin- and check-aware generator, through the shared
+     * {@link LegalMoveCache} for the side to move.
      */
 
     public Collection<ChessMove> validMoves(ChessPosition startPosition) {
-        ChessPiece currentPiece = board.getPiece(startPosition);
-
-        if (currentPiece == null) return java.util.Collections.emptySet();
+        var moves = new MoveList();
+        // the position lookup rejects off-board squares before they alias onto the board
+        ChessPiece piece = board.getPiece(startPosition);
+        if (piece == null) return moves.toChessMoves();
+        final int square = startPosition.getSquare();
+        if (piece.getTeamColor() == turnColor) {
+            for (int move : sideToMoveMoves()) {
+                if (PackedMove.from(move) == square) moves.add(move);
+            }
+        } else {
+            LegalMoveGenerator.generate(this, piece.getTeamColor(), 1L << square, moves);
+        }
+        return moves.toChessMoves();
+    }
 
-        HashSet<ChessMove> validMoves = new HashSet<>(currentPiece.pieceMoves(board, startPosition));
-        if (validMoves.isEmpty()) return validMoves;
+    /**
+     * Appends the valid moves for the piece on a square to a move list, packed with
+     * {@link PackedMove}. Nothing is appended if the square is empty.
+     *
+     * @param square the 0..63 index of the piece to get valid moves for
+     * @param moves  the list to append to
+     */
+    public void validMoves(int square, MoveList moves) {
+        ChessPiece currentPiece = board.getPiece(square);
+        if (currentPiece == null) return;
 
         final TeamColor currentTeamColor = currentPiece.getTeamColor();
+        final int first = moves.size();
+        currentPiece.generateMoves(board, square, moves);
+        if (currentPiece.getPieceType() == ChessPiece.PieceType.KING) {
+            castlingMoves(currentTeamColor, square, moves);
+        }
+        final int enPassant = PackedState.enPassant(state);
+        if (currentPiece.getPieceType() == ChessPiece.PieceType.PAWN && currentTeamColor == turnColor
+                && enPassant != 0 && (AttackTables.pawnAttacks(currentTeamColor, square) & (1L << enPassant)) != 0) {
+            moves.add(PackedMove.encode(square, enPassant, null));
+        }
 
-        Iterator<ChessMove> it = validMoves.iterator();
-        while (it.hasNext()) {
-            ChessMove move = it.next();
-            MoveSnapshot snap = null;
-            boolean illegal = false;
-
-            try {
-                snap = simulateMove(move);
-                if (snap == null) {
-                    illegal = true;
-                } else if (isInCheck(currentTeamColor)) {
-                    illegal = true;
-                }
-            } catch (RuntimeException e) {
-                illegal = true;
-            } finally {
-                if (snap != null) {
-                    undoSimulatedMove(snap);
-                }
-            }
+        // keep the moves that don't leave the king in check, compacting in place
+        int kept = first;
+        for (int i = first; i < moves.size(); i++) {
+            int move = moves.get(i);
+            doMove(move);
+            boolean illegal = isInCheck(currentTeamColor);
+            undoMove();
+
+            if (!illegal) moves.set(kept++, move);
+        }
+        moves.truncate(kept);
+    }
 
-            if (illegal) it.remove();
+    /**
+     * Appends the valid moves for every piece of a team to a move list
+     *
+     * @param teamColor the team to get valid moves for
+     * @param moves     the list to append to
+     */
+    public void validMoves(TeamColor teamColor, MoveList moves) {
+        long pieces = board.getOccupancy(teamColor);
+        while (pieces != 0) {
+            int square = Long.numberOfTrailingZeros(pieces);
+            pieces &= pieces - 1;
+            validMoves(square, moves);
+        }
+    }
+
+    /**
+     * Gets the legal moves for a piece using the pin- and check-aware generator.
+     * Returns the same moves as {@link #validMoves(ChessPosition)} without playing
+     * each candidate on the board.
+     *
+     * @param startPosition the piece to get legal moves for
+     * @return Set of legal moves for requested piece, empty if no piece at startPosition
+     */
+    public Collection<ChessMove> legalMoves(ChessPosition startPosition) {
+        var moves = new MoveList();
+        ChessPiece piece = board.getPiece(startPosition);
+        if (piece != null) {
+            LegalMoveGenerator.generate(this, piece.getTeamColor(), 1L << startPosition.getSquare(), moves);
         }
+        return moves.toChessMoves();
+    }
+
+    /**
+     * Appends the legal moves for every piece of a team to a move list using the
+     * pin- and check-aware generator
+     *
+     * @param teamColor the team to get legal moves for
+     * @param moves     the list to append to
+     */
+    public void legalMoves(TeamColor teamColor, MoveList moves) {
+        LegalMoveGenerator.generate(this, teamColor, ~0L, moves);
+    }
 
-        return validMoves;
+    /**
+     * Gets the legal moves of the side to move from the shared {@link LegalMoveCache},
+     * generating and storing them on a miss
+     *
+     * @return the packed moves; the array is shared and must not be modified
+     */
+    private int[] sideToMoveMoves() {
+        final LegalMoveCache cache = LegalMoveCache.shared();
+        final long key = getZobristKey();
+        final long occupancy = board.getOccupied();
+        final int position = LegalMoveCache.position(state, turnColor);
+        int[] moves = cache.get(key, occupancy, position);
+        if (moves == null) {
+            scratchMoves.clear();
+            legalMoves(turnColor, scratchMoves);
+            moves = scratchMoves.toArray();
+            cache.put(key, occupancy, position, moves);
+        }
+        return moves;
     }
 
     /**
@@ -209,6 +717,11 @@ public class ChessGame {
     public void makeMove(ChessMove move) throws InvalidMoveException {
         if (move == null) throw new InvalidMoveException("Move is null");
         ChessPosition start = move.getStartPosition();
+        ChessPosition end = move.getEndPosition();
+        if (!ChessBoard.inBounds(start.getRow(), start.getColumn())
+                || !ChessBoard.inBounds(end.getRow(), end.getColumn())) {
+            throw new InvalidMoveException("Move leaves the board");
+        }
 
         ChessPiece mover = board.getPiece(start);
         if (mover == null) throw new InvalidMoveException("No piece at start");
@@ -217,17 +730,25 @@ public class ChessGame {
             throw new InvalidMoveException("Not your turn");
         }
 
-        //moves returns a hashset of all legal moves
-        var legalMoves = validMoves(start);
-        if (legalMoves.isEmpty() || !legalMoves.contains(move)) throw new InvalidMoveException("Not a valid move");
+        final int packed = PackedMove.fromChessMove(move);
+        boolean valid = false;
+        for (int legal : sideToMoveMoves()) {
+            if (legal == packed) {
+                valid = true;
+                break;
+            }
+        }
+        if (!valid) throw new InvalidMoveException("Not a valid move");
 
-        ChessPiece capturePiece = board.getPiece(move.getEndPosition());
+        ChessPiece capturePiece = board.getPiece(end);
         if (capturePiece != null && capturePiece.getPieceType() == ChessPiece.PieceType.KING) {
             throw new InvalidMoveException("You cannot capture the king");
         }
 
-        simulateMove(move);
-        turnColor = (turnColor == TeamColor.WHITE) ? TeamColor.BLACK : TeamColor.WHITE;
+        doMove(packed);
+        // a played move is final, so its undo record is dropped
+        releasePromotionPiece(undoDepth - 1, packed);
+        clearUndoEntry(--undoDepth);
     }
 
     /**
@@ -237,35 +758,22 @@ public class ChessGame {
      * @return True if the specified team is in check
      */
     public boolean isInCheck(TeamColor teamColor) {
-        TeamColor opp = (teamColor == TeamColor.WHITE) ? TeamColor.BLACK : TeamColor.WHITE;
-        ChessPiece king = (teamColor == TeamColor.WHITE) ? whiteKing : blackKing;
-        ChessPosition kingPos = king.getPiecePosition();
-
-        for (int r = 1; r <= 8; r++) {
-            for (int c = 1; c <= 8; c++) {
-                ChessPosition pos = new ChessPosition(r, c);
-                ChessPiece p = board.getPiece(pos);
-                if (p == null || p.getTeamColor() != opp) continue;
-
-                for (ChessMove m : p.pieceMoves(board, pos)) {
-                    if (m.getEndPosition().equals(kingPos)) {
-                        return true; //King in Check
-                    }
-                }
+        long kings = board.getBitboard(teamColor, ChessPiece.PieceType.KING);
+        final TeamColor opp = opposite(teamColor);
+        while (kings != 0) {
+            int kingSquare = Long.numberOfTrailingZeros(kings);
+            kings &= kings - 1;
+            if (board.isSquareAttacked(kingSquare, opp)) {
+                return true; //King in Check
             }
         }
         return false;
     }
 
     private boolean hasNoLegalMove(TeamColor color) {
-        for (int r = 1; r <= 8; r++) {
-            for (int c = 1; c <= 8; c++) {
-                ChessPosition pos = new ChessPosition(r, c);
-                ChessPiece p = board.getPiece(pos);
-                if (p != null && p.getTeamColor() == color && !validMoves(pos).isEmpty()) return false;
-            }
-        }
-        return true;
+        scratchMoves.clear();
+        legalMoves(color, scratchMoves);
+        return scratchMoves.isEmpty();
     }
 
     /**
@@ -275,6 +783,7 @@ public class ChessGame {
      * @return True if the specified team is in checkmate
      */
     public boolean isInCheckmate(TeamColor teamColor) {
+        if (teamColor == turnColor) return getGameStatus() == GameStatus.CHECKMATE;
         return isInCheck(teamColor) && hasNoLegalMove(teamColor);
     }
 
@@ -286,24 +795,30 @@ public class ChessGame {
      * @return True if the specified team is in stalemate, otherwise false
      */
     public boolean isInStalemate(TeamColor teamColor) {
+        if (teamColor == turnColor) return getGameStatus() == GameStatus.STALEMATE;
         return !isInCheck(teamColor) && hasNoLegalMove(teamColor);
     }
 
     /**
-     * Sets this game's chessboard with a given board
+     * Sets this game's chessboard with a given board. Castling rights are assumed for
+     * every king and rook still on their home squares, with no en passant target and
+     * the clocks restarted; use {@link #setState} to restore them exactly.
      *
      * @param board the new board to use
      */
     public void setBoard(ChessBoard board) {
         this.board = board;
+        this.state = PackedState.encode(inferCastlingRights(board), 0, 0, 1);
+        this.historyPly = 0;
+        this.historySize = 0;
 
         this.whiteKing = null;
         this.blackKing = null;
 
         for (int r = 1; r <= 8; r++) {
             for (int c = 1; c <= 8; c++) {
-                ChessPosition pos = new ChessPosition(r, c);
-                ChessPiece piece = board.getPiece(new ChessPosition(r, c));
+                ChessPosition pos = ChessPosition.of(r, c);
+                ChessPiece piece = board.getPiece(pos);
                 if (piece == null) continue;
 
                 piece.setPiecePosition(pos);
@@ -315,6 +830,20 @@ public class ChessGame {
         }
     }
 
+    // a right is assumed whenever the king and that rook still stand on their home squares
+    static int inferCastlingRights(ChessBoard board) {
+        int rights = 0;
+        for (TeamColor color : TeamColor.values()) {
+            final int king = kingHome(color);
+            if ((board.getBitboard(color, ChessPiece.PieceType.KING) & (1L << king)) == 0) continue;
+            final long rooks = board.getBitboard(color, ChessPiece.PieceType.ROOK);
+            final int kingside = (color == TeamColor.WHITE) ? PackedState.WHITE_KINGSIDE : PackedState.BLACK_KINGSIDE;
+            if ((rooks & (1L << (king + 3))) != 0) rights |= kingside;
+            if ((rooks & (1L << (king - 4))) != 0) rights |= PackedState.castlingRights(color) & ~kingside;
+        }
+        return rights;
+    }
+
     /**
      * Gets the current chessboard
      *
@@ -329,11 +858,16 @@ public class ChessGame {
         if (!(o instanceof ChessGame chessGame)) {
             return false;
         }
-        return turnColor == chessGame.turnColor && Objects.equals(board, chessGame.board);
+        if (getZobristKey() != chessGame.getZobristKey()) {
+            return false;
+        }
+        return turnColor == chessGame.turnColor
+                && PackedState.positionBits(state) == PackedState.positionBits(chessGame.state)
+                && Objects.equals(board, chessGame.board);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(turnColor, board);
+        return Long.hashCode(getZobristKey());
     }
 }
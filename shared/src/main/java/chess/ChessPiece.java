@@ -1,7 +1,6 @@
 package chess;
 
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.Objects;
 
 /**
@@ -16,10 +15,16 @@ public class ChessPiece {
     private final PieceType type;
     private ChessPosition piecePosition;
 
-    //helper to make new chess position objects
-    private static ChessPosition cpos(int row, int col) {
-        return new ChessPosition(row, col);
-    }
+    // sliders use the magic-bitboard lookup unless -Dchess.magicSliders=false selects the ray walker;
+    // volatile so a switch made on one thread reaches search and perft workers
+    private static volatile boolean magicSliders = Boolean.parseBoolean(System.getProperty("chess.magicSliders", "true"));
+
+    private static final int[][] ROOK_DIRS = {{+1,0},{-1,0},{0,+1},{0,-1}};
+    private static final int[][] BISHOP_DIRS = {{+1,+1},{+1,-1},{-1,+1},{-1,-1}};
+    private static final int[][] QUEEN_DIRS = {
+            {+1,0},{-1,0},{0,+1},{0,-1},
+            {+1,+1},{+1,-1},{-1,+1},{-1,-1}
+    };
 
     public ChessPiece(ChessGame.TeamColor pieceColor, ChessPiece.PieceType type, ChessPosition position) {
         this.pieceColor = pieceColor;
@@ -36,6 +41,17 @@ public class ChessPiece {
 
     public void setPiecePosition(ChessPosition position) {this.piecePosition = position;}
 
+    /**
+     * Chooses how rook, bishop and queen moves and attacks are generated, for move
+     * generation as well as the attack queries of {@link ChessBoard}
+     *
+     * @param enabled true for the magic-bitboard lookup, false for the square-by-square
+     *                ray walk kept as a correctness reference
+     */
+    public static void setMagicSliders(boolean enabled) {magicSliders = enabled;}
+
+    public static boolean usesMagicSliders() {return magicSliders;}
+
     /**
      * The various different chess piece options
      */
@@ -63,48 +79,51 @@ public class ChessPiece {
         return type;
     }
 
-    private void addPawnMoveHelper(HashSet<ChessMove> moves, ChessPosition start, int endrow, int endcol, boolean promote) {
-        ChessPosition end = new ChessPosition(endrow, endcol);
+    private void addPawnMoveHelper(MoveList moves, int from, int to, boolean promote) {
         if (!promote) {
-            moves.add(new ChessMove(start, end, null));
+            moves.add(PackedMove.encode(from, to, null));
         } else {
-            moves.add(new ChessMove(start, end, PieceType.QUEEN));
-            moves.add(new ChessMove(start, end, PieceType.ROOK));
-            moves.add(new ChessMove(start, end, PieceType.BISHOP));
-            moves.add(new ChessMove(start, end, PieceType.KNIGHT));
+            moves.add(PackedMove.encode(from, to, PieceType.QUEEN));
+            moves.add(PackedMove.encode(from, to, PieceType.ROOK));
+            moves.add(PackedMove.encode(from, to, PieceType.BISHOP));
+            moves.add(PackedMove.encode(from, to, PieceType.KNIGHT));
         }
     }
 
 
-    private void recursiveMoveHelper(HashSet<ChessMove> moves, ChessBoard board, ChessPosition start, int row, int col, int row_move, int col_mov) {
+    private void recursiveMoveHelper(MoveList moves, ChessBoard board, int from, int row, int col, int row_move, int col_mov) {
 
         if (!ChessBoard.inBounds(row, col)) return;
-        ChessPiece target = board.getPiece(cpos(row, col));
+        final int to = ChessBoard.squareIndex(row, col);
+        final long bit = 1L << to;
 
-        if (target == null) {
-            moves.add(new ChessMove(start, cpos(row, col), null));
+        if ((board.getOccupied() & bit) == 0) {
+            moves.add(PackedMove.encode(from, to, null));
             row = row + row_move;
             col = col + col_mov;
-            recursiveMoveHelper(moves, board, start, row, col, row_move, col_mov);
+            recursiveMoveHelper(moves, board, from, row, col, row_move, col_mov);
             return;
         }
 
-        if(target.getTeamColor() != this.pieceColor) {
-            moves.add(new ChessMove(start, cpos(row, col), null));
+        if((board.getOccupancy(this.pieceColor) & bit) == 0) {
+            moves.add(PackedMove.encode(from, to, null));
         }
     }
 
-    private void singleMoveHelper(HashSet<ChessMove> moves, int[][] dv, ChessBoard board, int row, int col, ChessPosition start) {
-        for (int[] movement : dv) {
-            int target_row = row+movement[0];
-            int target_col = col+movement[1];
-
-            if (!ChessBoard.inBounds(target_row,target_col)) continue;
+    //adds a move to every square in the target mask
+    private void maskMoveHelper(MoveList moves, int from, long targets) {
+        while (targets != 0) {
+            int to = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            moves.add(PackedMove.encode(from, to, null));
+        }
+    }
 
-            ChessPiece target = board.getPiece(cpos(target_row, target_col));
-            if (target == null || target.getTeamColor() != this.pieceColor) {
-                moves.add(new ChessMove(start, cpos(target_row, target_col), null));
-            }
+    private void rayMoveHelper(MoveList moves, ChessBoard board, int from, int[][] dirs) {
+        final int row = (from >>> 3) + 1;
+        final int col = (from & 7) + 1;
+        for(int[] directions : dirs) {
+            recursiveMoveHelper(moves, board, from, row + directions[0], col + directions[1], directions[0], directions[1]);
         }
     }
 
@@ -116,81 +135,83 @@ public class ChessPiece {
      * @return Collection of valid moves
      */
     public Collection<ChessMove> pieceMoves(ChessBoard board, ChessPosition myPosition) {
-        var moves = new HashSet<ChessMove>();
+        var moves = new MoveList();
+        generateMoves(board, myPosition.getSquare(), moves);
+        return moves.toChessMoves();
+    }
 
-        final int row = myPosition.getRow();
-        final int col = myPosition.getColumn();
+    /**
+     * Appends the moves this piece could make from the given square to a move list,
+     * packed with {@link PackedMove}. Like {@link #pieceMoves}, moves that leave the
+     * king in danger are included.
+     *
+     * @param board  the board the piece stands on
+     * @param square the 0..63 index of the piece's square
+     * @param moves  the list to append to
+     */
+    public void generateMoves(ChessBoard board, int square, MoveList moves) {
+        final long own = board.getOccupancy(this.pieceColor);
 
         switch (this.type) {
             case ROOK:
-                final int[][] ROOK_DIRS   = {{+1,0},{-1,0},{0,+1},{0,-1}};
-                for(int[] directions : ROOK_DIRS) {
-                    recursiveMoveHelper(moves, board, myPosition, myPosition.getRow() + directions[0], myPosition.getColumn() + directions[1], directions[0], directions[1]);
+                if (magicSliders) {
+                    maskMoveHelper(moves, square, SlidingAttacks.rookAttacks(square, board.getOccupied()) & ~own);
+                    break;
                 }
+                rayMoveHelper(moves, board, square, ROOK_DIRS);
                 break;
             case KNIGHT:
-                final int[][] KNIGHT_DIRS = {{+1,+2}, {+1, -2}, {-1, +2}, {-1, -2}, {+2, +1}, {+2, -1}, {-2, +1}, {-2, -1}};
-                singleMoveHelper(moves, KNIGHT_DIRS, board, row, col, myPosition);
+                maskMoveHelper(moves, square, AttackTables.knightAttacks(square) & ~own);
                 break;
             case BISHOP:
-                final int[][] BISHOP_DIRS = {{+1,+1},{+1,-1},{-1,+1},{-1,-1}};
-                for(int[] directions : BISHOP_DIRS) {
-                    recursiveMoveHelper(moves, board, myPosition, myPosition.getRow() + directions[0], myPosition.getColumn() + directions[1], directions[0], directions[1]);
+                if (magicSliders) {
+                    maskMoveHelper(moves, square, SlidingAttacks.bishopAttacks(square, board.getOccupied()) & ~own);
+                    break;
                 }
+                rayMoveHelper(moves, board, square, BISHOP_DIRS);
                 break;
             case QUEEN:
-                final int[][] QUEEN_DIRS  = {
-                        {+1,0},{-1,0},{0,+1},{0,-1},
-                        {+1,+1},{+1,-1},{-1,+1},{-1,-1}
-                };
-                for(int[] directions : QUEEN_DIRS) {
-                    recursiveMoveHelper(moves, board, myPosition, myPosition.getRow() + directions[0], myPosition.getColumn() + directions[1], directions[0], directions[1]);
+                if (magicSliders) {
+                    maskMoveHelper(moves, square, SlidingAttacks.queenAttacks(square, board.getOccupied()) & ~own);
+                    break;
                 }
+                rayMoveHelper(moves, board, square, QUEEN_DIRS);
                 break;
             case KING:
-                final int[][] KING_DIRS  = {
-                        {+1,0},{-1,0},{0,+1},{0,-1},
-                        {+1,+1},{+1,-1},{-1,+1},{-1,-1}
-                };
-                singleMoveHelper(moves, KING_DIRS, board, row, col, myPosition);
+                maskMoveHelper(moves, square, AttackTables.kingAttacks(square) & ~own);
                 break;
             case PAWN:
                 final boolean white = (this.pieceColor == ChessGame.TeamColor.WHITE);
+                final int row = (square >>> 3) + 1;
                 final int direction = white ? +1 : -1;
                 final int start_row = white ? 2 : 7;
                 final int promo_row = white ? 8 : 1;
 
-                int row_move = row + direction;
+                final int row_move = row + direction;
+                if (row_move < 1 || row_move > 8) break;
+                final boolean promote = (row_move == promo_row);
 
-                // single forward: check if in bounds and endposition is empty
-                if(ChessBoard.inBounds(row_move, col) && board.getPiece(cpos(row_move, col)) == null) {
-                    boolean promote = (row_move == promo_row);
-                    addPawnMoveHelper(moves, myPosition, row_move, col, promote);
+                // single forward: endposition must be empty
+                final int forward = square + 8 * direction;
+                if ((board.getOccupied() & (1L << forward)) == 0) {
+                    addPawnMoveHelper(moves, square, forward, promote);
 
                     //check if on starting row for double moves
-                    if (row == start_row) {
-                        int row_move2 = row + 2 * direction;
-                        if (ChessBoard.inBounds(row_move2, col) && board.getPiece(cpos(row_move2, col)) == null) {
-                            addPawnMoveHelper(moves, myPosition, row_move2, col, false);
-                        }
+                    final int forward2 = forward + 8 * direction;
+                    if (row == start_row && (board.getOccupied() & (1L << forward2)) == 0) {
+                        addPawnMoveHelper(moves, square, forward2, false);
                     }
-
-
                 }
                 //for diagonal captures
-                for (int directional_move : new int[]{-1, +1}) {
-                    final int col_move = col + directional_move;
-                    if(!ChessBoard.inBounds(row_move, col_move)) {continue;}
-
-                    ChessPiece target_square = board.getPiece(cpos(row_move,col_move));
-                    if (target_square != null && target_square.getTeamColor() != this.pieceColor) {
-                        final boolean promote = (row_move == promo_row);
-                        addPawnMoveHelper(moves, myPosition, row_move, col_move, promote);
-                    }
+                final ChessGame.TeamColor opp = white ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+                long captures = AttackTables.pawnAttacks(this.pieceColor, square) & board.getOccupancy(opp);
+                while (captures != 0) {
+                    int target = Long.numberOfTrailingZeros(captures);
+                    captures &= captures - 1;
+                    addPawnMoveHelper(moves, square, target, promote);
                 }
             break;
         }
-        return moves;
     }
 
 
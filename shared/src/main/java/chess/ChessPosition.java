@@ -1,7 +1,5 @@
 package chess;
 
-import java.util.Objects;
-
 /**
  * Represents a single square position on a chess board
  * <p>
@@ -10,6 +8,15 @@ import java.util.Objects;
  */
 public class ChessPosition {
 
+    // one canonical instance per on-board square, indexed like ChessBoard.squareIndex
+    private static final ChessPosition[] SQUARES = new ChessPosition[64];
+
+    static {
+        for (int square = 0; square < 64; square++) {
+            SQUARES[square] = new ChessPosition((square >>> 3) + 1, (square & 7) + 1);
+        }
+    }
+
     private final int row;
     private final int col;
 
@@ -18,6 +25,27 @@ public class ChessPosition {
         this.col = col;
     }
 
+    /**
+     * Gets the shared position for a square. On-board positions are cached, so this
+     * never allocates for them; off-board coordinates get a fresh instance.
+     *
+     * @return the position at the given row and column
+     */
+    public static ChessPosition of(int row, int col) {
+        if (!ChessBoard.inBounds(row, col)) {
+            return new ChessPosition(row, col);
+        }
+        return SQUARES[ChessBoard.squareIndex(row, col)];
+    }
+
+    /**
+     * @param square a 0..63 square index
+     * @return the shared position for that square
+     */
+    public static ChessPosition of(int square) {
+        return SQUARES[square];
+    }
+
     /**
      * @return which row this position is in
      * 1 codes for the bottom row
@@ -34,6 +62,13 @@ public class ChessPosition {
         return col;
     }
 
+    /**
+     * @return the 0..63 index of this square, a1 = 0 through h8 = 63
+     */
+    public int getSquare() {
+        return ChessBoard.squareIndex(row, col);
+    }
+
     @Override
     public String toString() {
         return String.format("%d:%d", row, col);
@@ -41,6 +76,9 @@ public class ChessPosition {
 
     @Override
     public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
         if (o == null || getClass() != o.getClass()) {
             return false;
         }
@@ -50,6 +88,7 @@ public class ChessPosition {
 
     @Override
     public int hashCode() {
-        return Objects.hash(row, col);
+        // same value as Objects.hash(row, col) without the varargs array
+        return 31 * (31 + row) + col;
     }
 }
@@ -0,0 +1,41 @@
+package chess;
+
+/**
+ * Static evaluation of a position in centipawns, from the point of view of the side to move.
+ * The board keeps middlegame and endgame piece-square scores and the game phase up to
+ * date as pieces move (see {@link PieceSquareTables}), so scoring a position is a blend of
+ * three numbers however many pieces are on the board.
+ */
+public final class Evaluation {
+    private Evaluation() {}
+
+    // indexed by PieceType ordinal: KING, QUEEN, BISHOP, KNIGHT, ROOK, PAWN
+    private static final int[] PIECE_VALUES = {0, 900, 330, 320, 500, 100};
+
+    /**
+     * @return the usual value of a piece type in centipawns, 0 for the king; for move
+     * ordering and exchange decisions, not part of {@link #evaluate}
+     */
+    public static int pieceValue(ChessPiece.PieceType type) {
+        return PIECE_VALUES[type.ordinal()];
+    }
+
+    /**
+     * @param game the position to score
+     * @return the score for the side to move: positive when it stands better
+     */
+    public static int evaluate(ChessGame game) {
+        final int score = evaluate(game.getBoard());
+        return (game.getTeamTurn() == ChessGame.TeamColor.WHITE) ? score : -score;
+    }
+
+    /**
+     * @param board the pieces to score
+     * @return the tapered score from white's point of view
+     */
+    public static int evaluate(ChessBoard board) {
+        final int phase = Math.min(board.getGamePhase(), PieceSquareTables.MAX_PHASE);
+        return (board.getMiddlegameScore() * phase
+                + board.getEndgameScore() * (PieceSquareTables.MAX_PHASE - phase)) / PieceSquareTables.MAX_PHASE;
+    }
+}
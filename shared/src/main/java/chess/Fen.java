@@ -0,0 +1,201 @@
+package chess;
+
+/**
+ * Reads and writes Forsyth-Edwards Notation, e.g.
+ * {@code rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq - 0 1}: the piece placement
+ * (ranks 8 down to 1 separated by '/', uppercase for white, lowercase for black, digits for
+ * runs of empty squares), the side to move, the castling rights, the en passant target and
+ * the halfmove and fullmove clocks.
+ * <p>
+ * Parsing walks the string once without splitting it. An en passant target is kept only
+ * when a pawn can actually take it and the enemy pawn that pushed past it stands behind it,
+ * the same rule {@link ChessGame#doMove(int)} applies, so a parsed position has the same
+ * key as the one reached by playing to it.
+ */
+final class Fen {
+    private Fen() {}
+
+    // indexed by PieceType ordinal
+    private static final String PIECE_LETTERS = "kqbnrp";
+    private static final ChessPiece.PieceType[] TYPES = ChessPiece.PieceType.values();
+
+    static String format(ChessGame game) {
+        final ChessBoard board = game.getBoard();
+        final int state = game.getState();
+        StringBuilder sb = new StringBuilder(90);
+
+        for (int row = 8; row >= 1; row--) {
+            int empty = 0;
+            for (int col = 1; col <= 8; col++) {
+                ChessPiece piece = board.getPiece(ChessBoard.squareIndex(row, col));
+                if (piece == null) {
+                    empty++;
+                    continue;
+                }
+                if (empty != 0) {
+                    sb.append((char) ('0' + empty));
+                    empty = 0;
+                }
+                char letter = PIECE_LETTERS.charAt(piece.getPieceType().ordinal());
+                sb.append(piece.getTeamColor() == ChessGame.TeamColor.WHITE ? Character.toUpperCase(letter) : letter);
+            }
+            if (empty != 0) sb.append((char) ('0' + empty));
+            if (row > 1) sb.append('/');
+        }
+
+        sb.append(game.getTeamTurn() == ChessGame.TeamColor.WHITE ? " w " : " b ");
+
+        final int castling = PackedState.castling(state);
+        if (castling == 0) sb.append('-');
+        if ((castling & PackedState.WHITE_KINGSIDE) != 0) sb.append('K');
+        if ((castling & PackedState.WHITE_QUEENSIDE) != 0) sb.append('Q');
+        if ((castling & PackedState.BLACK_KINGSIDE) != 0) sb.append('k');
+        if ((castling & PackedState.BLACK_QUEENSIDE) != 0) sb.append('q');
+
+        final int enPassant = PackedState.enPassant(state);
+        sb.append(' ');
+        if (enPassant == 0) {
+            sb.append('-');
+        } else {
+            sb.append((char) ('a' + (enPassant & 7))).append((char) ('1' + (enPassant >>> 3)));
+        }
+
+        return sb.append(' ').append(PackedState.halfmoveClock(state))
+                .append(' ').append(PackedState.fullmoveNumber(state))
+                .toString();
+    }
+
+    /**
+     * @param fen a FEN string; the two clock fields may be left out
+     * @return a new game at that position
+     * @throws IllegalArgumentException if the string is not valid FEN
+     */
+    static ChessGame parse(String fen) {
+        final int length = fen.length();
+        final ChessBoard board = new ChessBoard();
+        int i = 0;
+
+        int row = 8;
+        int col = 1;
+        for (; i < length && fen.charAt(i) != ' '; i++) {
+            final char ch = fen.charAt(i);
+            if (ch == '/') {
+                if (col != 9 || row == 1) throw invalid(fen, "rank " + row + " does not have 8 squares");
+                row--;
+                col = 1;
+            } else if (ch >= '1' && ch <= '8') {
+                col += ch - '0';
+            } else {
+                final int type = PIECE_LETTERS.indexOf(Character.toLowerCase(ch));
+                if (type < 0) throw invalid(fen, "unknown piece '" + ch + "'");
+                if (col > 8) throw invalid(fen, "rank " + row + " has more than 8 squares");
+                ChessGame.TeamColor color = Character.isUpperCase(ch) ? ChessGame.TeamColor.WHITE : ChessGame.TeamColor.BLACK;
+                board.addPiece(ChessBoard.squareIndex(row, col), new ChessPiece(color, TYPES[type]));
+                col++;
+            }
+            if (col > 9) throw invalid(fen, "rank " + row + " has more than 8 squares");
+        }
+        if (row != 1 || col != 9) throw invalid(fen, "placement must have 8 ranks of 8 squares");
+
+        i = nextField(fen, i, "side to move");
+        final ChessGame.TeamColor turn = switch (fen.charAt(i++)) {
+            case 'w' -> ChessGame.TeamColor.WHITE;
+            case 'b' -> ChessGame.TeamColor.BLACK;
+            default -> throw invalid(fen, "side to move must be 'w' or 'b'");
+        };
+
+        i = nextField(fen, i, "castling rights");
+        int castling = 0;
+        if (fen.charAt(i) == '-') {
+            i++;
+        } else {
+            for (; i < length && fen.charAt(i) != ' '; i++) {
+                castling |= switch (fen.charAt(i)) {
+                    case 'K' -> PackedState.WHITE_KINGSIDE;
+                    case 'Q' -> PackedState.WHITE_QUEENSIDE;
+                    case 'k' -> PackedState.BLACK_KINGSIDE;
+                    case 'q' -> PackedState.BLACK_QUEENSIDE;
+                    default -> throw invalid(fen, "unknown castling right '" + fen.charAt(i) + "'");
+                };
+            }
+        }
+
+        i = nextField(fen, i, "en passant square");
+        int enPassant = 0;
+        if (fen.charAt(i) == '-') {
+            i++;
+        } else if (i + 1 < length) {
+            final int file = fen.charAt(i) - 'a';
+            final int rank = fen.charAt(i + 1) - '1';
+            final int expectedRank = (turn == ChessGame.TeamColor.WHITE) ? 5 : 2;
+            if (file < 0 || file > 7 || rank != expectedRank) throw invalid(fen, "bad en passant square");
+            enPassant = rank * 8 + file;
+            i += 2;
+        } else {
+            throw invalid(fen, "bad en passant square");
+        }
+
+        int halfmove = 0;
+        int fullmove = 1;
+        if (skipSpace(fen, i) < length) {
+            i = nextField(fen, i, "halfmove clock");
+            int end = fieldEnd(fen, i);
+            halfmove = clock(fen, i, end, PackedState.HALFMOVE_MAX, "halfmove clock");
+            i = nextField(fen, end, "fullmove number");
+            end = fieldEnd(fen, i);
+            fullmove = clock(fen, i, end, PackedState.FULLMOVE_MAX, "fullmove number");
+            if (skipSpace(fen, end) != length) throw invalid(fen, "unexpected text after the clocks");
+        }
+
+        final ChessGame game = new ChessGame(board);
+        game.setTeamTurn(turn);
+        final ChessGame.TeamColor them = (turn == ChessGame.TeamColor.WHITE) ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+        // the target also needs the enemy pawn that just pushed past it, as PackedState.validate requires
+        final int pushed = (turn == ChessGame.TeamColor.WHITE) ? enPassant - 8 : enPassant + 8;
+        if (enPassant != 0 && ((AttackTables.pawnAttacks(them, enPassant)
+                & board.getBitboard(turn, ChessPiece.PieceType.PAWN)) == 0
+                || (board.getBitboard(them, ChessPiece.PieceType.PAWN) & (1L << pushed)) == 0)) {
+            enPassant = 0;
+        }
+        // rights without the king and rook at home could never be used, so they are dropped
+        castling &= ChessGame.inferCastlingRights(board);
+        game.setState(PackedState.encode(castling, enPassant, halfmove, Math.max(fullmove, 1)));
+        return game;
+    }
+
+    // moves past the spaces that must separate two fields
+    private static int nextField(String fen, int i, String field) {
+        if (i < fen.length() && fen.charAt(i) != ' ') throw invalid(fen, "expected a space before the " + field);
+        i = skipSpace(fen, i);
+        if (i >= fen.length()) throw invalid(fen, "missing " + field);
+        return i;
+    }
+
+    private static int fieldEnd(String fen, int i) {
+        while (i < fen.length() && fen.charAt(i) != ' ') i++;
+        return i;
+    }
+
+    // a clock must fit the bits PackedState keeps for it, rather than be clamped or wrap around
+    private static int clock(String fen, int start, int end, int max, String field) {
+        final int value;
+        try {
+            // a sign is not part of FEN, though parseInt would take one
+            if (!Character.isDigit(fen.charAt(start))) throw new NumberFormatException();
+            value = Integer.parseInt(fen, start, end, 10);
+        } catch (NumberFormatException e) {
+            throw invalid(fen, "bad " + field);
+        }
+        if (value > max) throw invalid(fen, field + " must be between 0 and " + max);
+        return value;
+    }
+
+    private static int skipSpace(String fen, int i) {
+        while (i < fen.length() && fen.charAt(i) == ' ') i++;
+        return i;
+    }
+
+    private static IllegalArgumentException invalid(String fen, String reason) {
+        return new IllegalArgumentException("Invalid FEN \"" + fen + "\": " + reason);
+    }
+}
@@ -0,0 +1,193 @@
+package chess;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded, thread-safe cache from a position key (board plus side to move, see
+ * {@link ChessGame#getZobristKey()}) to the legal moves of the side to move, packed
+ * with {@link PackedMove}.
+ * <p>
+ * Each slot also keeps a verifier, the occupied squares and the rest of the position
+ * (castling rights, en passant target and side to move), which a lookup must match as
+ * well as the key. Games in different server sessions share the cache, so two positions
+ * whose Zobrist keys collide must not hand each other their moves.
+ * <p>
+ * The cache is set-associative: a key can only live in the {@value #WAYS} slots of its
+ * bucket. Each slot has a reference bit set on every hit, and eviction sweeps the bucket
+ * CLOCK-style, giving referenced entries a second chance. Buckets are guarded by
+ * striped locks, so lookups from different games rarely contend, and a lookup never
+ * allocates.
+ * <p>
+ * {@link #shared()} is the JVM-wide instance used by {@link ChessGame}; its size comes
+ * from the {@code chess.moveCache.entries} system property (0 disables it).
+ */
+public final class LegalMoveCache {
+
+    private static final int WAYS = 4;
+    private static final int LOCK_STRIPES = 64;
+    private static final int DEFAULT_ENTRIES = 1 << 16;
+
+    private static final LegalMoveCache SHARED =
+            new LegalMoveCache(Integer.getInteger("chess.moveCache.entries", DEFAULT_ENTRIES));
+
+    private final int bucketMask;
+    private final long[] keys;
+    private final long[] occupancies;
+    private final int[] positions;
+    private final int[][] values;
+    private final boolean[] referenced;
+    private final int[] hands;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param entries maximum number of positions held, rounded up to a power of two;
+     *                0 makes a cache that stores nothing
+     */
+    public LegalMoveCache(int entries) {
+        int buckets = (entries <= 0) ? 0 : Integer.highestOneBit(Math.max(entries / WAYS, 1) * 2 - 1);
+        this.bucketMask = buckets - 1;
+        this.keys = new long[buckets * WAYS];
+        this.occupancies = new long[buckets * WAYS];
+        this.positions = new int[buckets * WAYS];
+        this.values = new int[buckets * WAYS][];
+        this.referenced = new boolean[buckets * WAYS];
+        this.hands = new int[buckets];
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    public static LegalMoveCache shared() {
+        return SHARED;
+    }
+
+    public boolean isEnabled() {
+        return bucketMask >= 0;
+    }
+
+    /**
+     * @param key       the position key
+     * @param occupancy the occupied squares of the position
+     * @param position  the position bits of the state word and the side to move, see {@link #position}
+     * @return the cached packed moves, which callers must not modify, or null on a miss
+     */
+    public int[] get(long key, long occupancy, int position) {
+        if (!isEnabled()) return null;
+        final int bucket = bucket(key);
+        final int first = bucket * WAYS;
+        synchronized (locks[bucket & (LOCK_STRIPES - 1)]) {
+            for (int slot = first; slot < first + WAYS; slot++) {
+                if (values[slot] != null && keys[slot] == key
+                        && occupancies[slot] == occupancy && positions[slot] == position) {
+                    referenced[slot] = true;
+                    hits.increment();
+                    return values[slot];
+                }
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Stores the moves for a position, evicting an entry of the same bucket if it is full
+     *
+     * @param key       the position key
+     * @param occupancy the occupied squares of the position
+     * @param position  the position bits of the state word and the side to move, see {@link #position}
+     * @param moves     the packed legal moves; the array is kept, so it must not be modified afterwards
+     */
+    public void put(long key, long occupancy, int position, int[] moves) {
+        if (!isEnabled()) return;
+        final int bucket = bucket(key);
+        final int first = bucket * WAYS;
+        synchronized (locks[bucket & (LOCK_STRIPES - 1)]) {
+            for (int slot = first; slot < first + WAYS; slot++) {
+                if (values[slot] == null || keys[slot] == key) {
+                    store(slot, key, occupancy, position, moves);
+                    return;
+                }
+            }
+            // CLOCK sweep: clear reference bits until an unreferenced slot comes round
+            while (true) {
+                int slot = first + hands[bucket];
+                hands[bucket] = (hands[bucket] + 1) % WAYS;
+                if (!referenced[slot]) {
+                    store(slot, key, occupancy, position, moves);
+                    return;
+                }
+                referenced[slot] = false;
+            }
+        }
+    }
+
+    private void store(int slot, long key, long occupancy, int position, int[] moves) {
+        keys[slot] = key;
+        occupancies[slot] = occupancy;
+        positions[slot] = position;
+        values[slot] = moves;
+        referenced[slot] = false;
+    }
+
+    /**
+     * @param state      the game's state word
+     * @param sideToMove the team to move
+     * @return the verifier bits besides the occupancy: castling rights, en passant target and side to move
+     */
+    public static int position(int state, ChessGame.TeamColor sideToMove) {
+        return PackedState.positionBits(state) | (sideToMove.ordinal() << 10);
+    }
+
+    private int bucket(long key) {
+        // the low bits of a Zobrist key are already uniformly random
+        return (int) (key ^ (key >>> 32)) & bucketMask;
+    }
+
+    public void clear() {
+        for (int stripe = 0; stripe < LOCK_STRIPES; stripe++) {
+            synchronized (locks[stripe]) {
+                for (int bucket = stripe; bucket <= bucketMask; bucket += LOCK_STRIPES) {
+                    for (int slot = bucket * WAYS; slot < (bucket + 1) * WAYS; slot++) {
+                        values[slot] = null;
+                        referenced[slot] = false;
+                    }
+                }
+            }
+        }
+        hits.reset();
+        misses.reset();
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return fraction of lookups answered from the cache, or 0 before the first lookup
+     */
+    public double hitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return (total == 0) ? 0.0 : (double) h / total;
+    }
+
+    /**
+     * @return number of slots, i.e. the most positions the cache can hold
+     */
+    public int capacity() {
+        return keys.length;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("LegalMoveCache[capacity=%d, hits=%d, misses=%d, hitRate=%.3f]",
+                capacity(), hits(), misses(), hitRate());
+    }
+}
@@ -0,0 +1,125 @@
+package chess;
+
+/**
+ * Generates fully legal moves without playing each candidate on the board.
+ * <p>
+ * Checkers and pinned pieces are worked out once per call from the king square:
+ * in double check only king moves are produced, in single check the other pieces may
+ * only capture the checker or block its ray, pinned pieces may only slide along the
+ * pin line, and the king may only step to squares no enemy piece attacks once the
+ * king itself no longer blocks the sliders. Castling is checked square by square, and
+ * en passant, whose two vacated squares can expose the king along a rank, is played
+ * and taken back like in {@link ChessGame#validMoves(int, MoveList)}.
+ */
+final class LegalMoveGenerator {
+    private LegalMoveGenerator() {}
+
+    /**
+     * Appends the legal moves of a team's pieces to a move list. Positions without
+     * exactly one king of that team fall back to {@link ChessGame#validMoves(int, MoveList)}.
+     *
+     * @param game  the game to generate for
+     * @param color the team to move
+     * @param from  the squares whose pieces to generate for
+     * @param moves the list to append to
+     */
+    static void generate(ChessGame game, ChessGame.TeamColor color, long from, MoveList moves) {
+        final ChessBoard board = game.getBoard();
+        final long kings = board.getBitboard(color, ChessPiece.PieceType.KING);
+        if (Long.bitCount(kings) != 1) {
+            long pieces = board.getOccupancy(color) & from;
+            while (pieces != 0) {
+                int square = Long.numberOfTrailingZeros(pieces);
+                pieces &= pieces - 1;
+                game.validMoves(square, moves);
+            }
+            return;
+        }
+
+        final ChessGame.TeamColor them = (color == ChessGame.TeamColor.WHITE)
+                ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+        final int king = Long.numberOfTrailingZeros(kings);
+        final long own = board.getOccupancy(color);
+        final long occupied = board.getOccupied();
+
+        if ((from & kings) != 0) {
+            // the king can't hide behind itself from a slider, so lift it off first
+            final long withoutKing = occupied & ~kings;
+            long targets = AttackTables.kingAttacks(king) & ~own;
+            while (targets != 0) {
+                int to = Long.numberOfTrailingZeros(targets);
+                targets &= targets - 1;
+                if (board.attackersTo(to, them, withoutKing) == 0) {
+                    moves.add(PackedMove.encode(king, to, null));
+                }
+            }
+        }
+
+        final long checkers = board.attackersTo(king, them, occupied);
+        if ((from & kings) != 0 && checkers == 0) {
+            game.castlingMoves(color, king, moves);
+        }
+        if (Long.bitCount(checkers) > 1) return;
+
+        // squares a non-king move must land on: anywhere, or onto/in front of the single checker
+        long targetMask = ~0L;
+        if (checkers != 0) {
+            int checker = Long.numberOfTrailingZeros(checkers);
+            targetMask = checkers | AttackTables.between(king, checker);
+        }
+        final long pinned = pinnedPieces(board, king, them, own, occupied);
+
+        long pieces = own & ~kings & from;
+        while (pieces != 0) {
+            int square = Long.numberOfTrailingZeros(pieces);
+            pieces &= pieces - 1;
+
+            long allowed = targetMask;
+            if ((pinned & (1L << square)) != 0) {
+                allowed &= AttackTables.line(king, square);
+            }
+            if (allowed == 0) continue;
+
+            final int first = moves.size();
+            board.getPiece(square).generateMoves(board, square, moves);
+            int kept = first;
+            for (int i = first; i < moves.size(); i++) {
+                int move = moves.get(i);
+                if ((allowed & (1L << PackedMove.to(move))) != 0) moves.set(kept++, move);
+            }
+            moves.truncate(kept);
+        }
+
+        final int enPassant = game.getEnPassantSquare();
+        if (enPassant != 0 && color == game.getTeamTurn()) {
+            long capturers = AttackTables.pawnAttacks(them, enPassant)
+                    & board.getBitboard(color, ChessPiece.PieceType.PAWN) & from;
+            while (capturers != 0) {
+                int square = Long.numberOfTrailingZeros(capturers);
+                capturers &= capturers - 1;
+                int move = PackedMove.encode(square, enPassant, null);
+                game.doMove(move);
+                boolean illegal = game.isInCheck(color);
+                game.undoMove();
+                if (!illegal) moves.add(move);
+            }
+        }
+    }
+
+    //own pieces that are the only blocker between the king and an enemy slider
+    private static long pinnedPieces(ChessBoard board, int king, ChessGame.TeamColor them, long own, long occupied) {
+        final long queens = board.getBitboard(them, ChessPiece.PieceType.QUEEN);
+        long snipers = (SlidingAttacks.rookAttacks(king, 0L) & (board.getBitboard(them, ChessPiece.PieceType.ROOK) | queens))
+                | (SlidingAttacks.bishopAttacks(king, 0L) & (board.getBitboard(them, ChessPiece.PieceType.BISHOP) | queens));
+        long pinned = 0L;
+        while (snipers != 0) {
+            int sniper = Long.numberOfTrailingZeros(snipers);
+            snipers &= snipers - 1;
+            long blockers = AttackTables.between(king, sniper) & occupied;
+            if (Long.bitCount(blockers) == 1 && (blockers & own) != 0) {
+                pinned |= blockers;
+            }
+        }
+        return pinned;
+    }
+}
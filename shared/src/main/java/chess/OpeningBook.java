@@ -0,0 +1,175 @@
+package chess;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+/**
+ * A read-only opening book, memory-mapped from a file in the Polyglot layout: 16-byte
+ * big-endian entries of a 64-bit position key, a 16-bit move, a 16-bit weight and 32
+ * unused bits, sorted by key as an unsigned number. The keys are
+ * {@link ChessGame#getZobristKey()} rather than Polyglot's own, so books come from
+ * {@link OpeningBookBuilder}, not from other tools.
+ * <p>
+ * A lookup binary-searches the mapping in place, so the book never has to fit on the
+ * heap and opening one costs nothing whatever its size. Reads use absolute offsets only,
+ * which makes a book safe to share between threads.
+ * <p>
+ * Moves use the Polyglot encoding: bits 0-5 the target square, bits 6-11 the start square,
+ * bits 12-14 the promotion (1 knight, 2 bishop, 3 rook, 4 queen), with castling written as
+ * the king taking its own rook.
+ */
+public final class OpeningBook {
+
+    static final int ENTRY_BYTES = 16;
+
+    /**
+     * @param move   a legal move of the position looked up
+     * @param weight how strongly the book recommends it; only relative weights matter
+     */
+    public record Entry(ChessMove move, int weight) {}
+
+    // indexed by Polyglot promotion code
+    private static final ChessPiece.PieceType[] PROMOTIONS = {null, ChessPiece.PieceType.KNIGHT,
+            ChessPiece.PieceType.BISHOP, ChessPiece.PieceType.ROOK, ChessPiece.PieceType.QUEEN};
+
+    private final ByteBuffer entries;
+    private final int size;
+
+    private OpeningBook(ByteBuffer entries) {
+        this.entries = entries;
+        this.size = entries.capacity() / ENTRY_BYTES;
+    }
+
+    /**
+     * Maps a book file; the mapping stays valid after this returns and the file is closed
+     *
+     * @param path the book file
+     * @return the book
+     * @throws IOException if the file cannot be read, is over 2 GB or is not a whole number of entries
+     */
+    public static OpeningBook open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long length = channel.size();
+            if (length % ENTRY_BYTES != 0 || length > Integer.MAX_VALUE) {
+                throw new IOException("Not an opening book: " + path);
+            }
+            return new OpeningBook(channel.map(FileChannel.MapMode.READ_ONLY, 0, length));
+        }
+    }
+
+    /**
+     * @return the number of entries in the book
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param game the position to look up
+     * @return the book's legal moves for the position in file order, empty if it is not in the book
+     */
+    public List<Entry> lookup(ChessGame game) {
+        final long key = game.getZobristKey();
+        List<Entry> found = new ArrayList<>();
+        MoveList legal = null;
+        for (int i = firstIndex(key); i < size && keyAt(i) == key; i++) {
+            if (legal == null) {
+                legal = new MoveList();
+                game.legalMoves(game.getTeamTurn(), legal);
+            }
+            final int move = fromPolyglot(game, entries.getShort(i * ENTRY_BYTES + 8) & 0xFFFF);
+            // a key collision with another position could name a move that is illegal here
+            if (legal.contains(move)) {
+                found.add(new Entry(PackedMove.toChessMove(move), entries.getShort(i * ENTRY_BYTES + 10) & 0xFFFF));
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Picks a book move at random, each in proportion to its weight
+     *
+     * @param game   the position to look up
+     * @param random the source of randomness
+     * @return the move, or null if the position is not in the book
+     */
+    public ChessMove pick(ChessGame game, RandomGenerator random) {
+        final List<Entry> found = lookup(game);
+        int total = 0;
+        for (Entry entry : found) {
+            total += entry.weight();
+        }
+        if (total == 0) return null;
+        int target = random.nextInt(total);
+        for (Entry entry : found) {
+            target -= entry.weight();
+            if (target < 0) return entry.move();
+        }
+        throw new AssertionError();
+    }
+
+    // lowest index whose key is not below key, in unsigned order
+    private int firstIndex(long key) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (Long.compareUnsigned(keyAt(mid), key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private long keyAt(int index) {
+        return entries.getLong(index * ENTRY_BYTES);
+    }
+
+    /**
+     * @return the Polyglot encoding of a legal move of the game's position
+     */
+    static int toPolyglot(ChessGame game, int move) {
+        final int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        final ChessPiece piece = game.getBoard().getPiece(from);
+        if (piece.getPieceType() == ChessPiece.PieceType.KING && Math.abs(to - from) == 2) {
+            to = (to > from) ? from + 3 : from - 4;
+        }
+        final ChessPiece.PieceType promotion = PackedMove.promotion(move);
+        int code = 0;
+        if (promotion != null) {
+            for (int i = 1; i < PROMOTIONS.length; i++) {
+                if (PROMOTIONS[i] == promotion) code = i;
+            }
+        }
+        return to | (from << 6) | (code << 12);
+    }
+
+    /**
+     * @return the {@link PackedMove} for a Polyglot move in the game's position, or -1 if
+     * it cannot be one there
+     */
+    static int fromPolyglot(ChessGame game, int polyglot) {
+        final int from = (polyglot >>> 6) & 0x3F;
+        int to = polyglot & 0x3F;
+        final int code = (polyglot >>> 12) & 0x7;
+        if (code >= PROMOTIONS.length) return -1;
+
+        final ChessBoard board = game.getBoard();
+        final ChessPiece piece = board.getPiece(from);
+        final ChessPiece target = board.getPiece(to);
+        if (piece != null && piece.getPieceType() == ChessPiece.PieceType.KING && target != null
+                && target.getTeamColor() == piece.getTeamColor() && target.getPieceType() == ChessPiece.PieceType.ROOK) {
+            to = (to > from) ? from + 2 : from - 2;
+        }
+        return PackedMove.encode(from, to, PROMOTIONS[code]);
+    }
+}
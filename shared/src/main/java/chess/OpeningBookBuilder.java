@@ -0,0 +1,296 @@
+package chess;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles an {@link OpeningBook} from games in PGN. Every move played in the first
+ * plies of a game is counted for the position it was played in, weighted by how the game
+ * went for the side that played it: 2 for a win, 1 for a draw or an unfinished game and
+ * 0 for a loss. Moves that only ever lost are left out of the book.
+ * <p>
+ * The PGN reader accepts the export format and the usual deviations from it: comments,
+ * variations, NAGs and move numbers are skipped, and games starting from a {@code FEN} tag
+ * are played from that position. A game with a move that cannot be read contributes the
+ * moves before it and is counted in {@link #gamesSkipped()}.
+ * <p>
+ * Run from the command line with
+ * {@code java -cp shared/target/classes chess.OpeningBookBuilder <book> <games.pgn>... [--plies n]}.
+ */
+public final class OpeningBookBuilder {
+
+    public static final int DEFAULT_PLIES = 24;
+    private static final int MAX_WEIGHT = 0xFFFF;
+
+    private final int maxPlies;
+    // position key -> Polyglot move -> summed weight
+    private final Map<Long, Map<Integer, Integer>> positions = new HashMap<>();
+    private int gamesRead;
+    private int gamesSkipped;
+
+    public OpeningBookBuilder() {
+        this(DEFAULT_PLIES);
+    }
+
+    /**
+     * @param maxPlies how many plies of each game go into the book
+     */
+    public OpeningBookBuilder(int maxPlies) {
+        if (maxPlies < 1) {
+            throw new IllegalArgumentException("Need at least one ply per game");
+        }
+        this.maxPlies = maxPlies;
+    }
+
+    /**
+     * Reads every game of a PGN file
+     *
+     * @param path the file, in UTF-8
+     * @throws IOException if the file cannot be read
+     */
+    public void addPgn(Path path) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            addPgn(reader);
+        }
+    }
+
+    /**
+     * Reads every game of a PGN stream; the reader is not closed
+     *
+     * @param reader the PGN text
+     * @throws IOException if the reader fails
+     */
+    public void addPgn(Reader reader) throws IOException {
+        final BufferedReader lines = (reader instanceof BufferedReader buffered) ? buffered : new BufferedReader(reader);
+        final List<String> moves = new ArrayList<>();
+        String fen = null;
+        String result = "*";
+        // comment and variation nesting carry over from line to line
+        boolean inComment = false;
+        int variationDepth = 0;
+
+        String line;
+        while ((line = lines.readLine()) != null) {
+            if (!inComment && variationDepth == 0) {
+                final String trimmed = line.strip();
+                if (trimmed.startsWith("%")) continue;
+                if (trimmed.startsWith("[")) {
+                    // a tag after movetext starts the next game
+                    if (!moves.isEmpty()) {
+                        addGame(fen, moves, result);
+                        moves.clear();
+                        fen = null;
+                        result = "*";
+                    }
+                    final String name = tagName(trimmed);
+                    if (name.equals("FEN")) fen = tagValue(trimmed);
+                    if (name.equals("Result")) result = tagValue(trimmed);
+                    continue;
+                }
+            }
+
+            int start = -1;
+            for (int i = 0; i <= line.length(); i++) {
+                final char ch = (i < line.length()) ? line.charAt(i) : ' ';
+                if (inComment) {
+                    if (ch == '}') inComment = false;
+                    continue;
+                }
+                final boolean separator = Character.isWhitespace(ch) || ch == '{' || ch == '(' || ch == ')' || ch == ';';
+                if (separator && start >= 0) {
+                    if (variationDepth == 0) {
+                        final String token = line.substring(start, i);
+                        if (isResult(token)) {
+                            addGame(fen, moves, token);
+                            moves.clear();
+                            fen = null;
+                            result = "*";
+                        } else {
+                            addToken(token, moves);
+                        }
+                    }
+                    start = -1;
+                }
+                if (ch == ';') break;
+                if (ch == '{') {
+                    inComment = true;
+                } else if (ch == '(') {
+                    variationDepth++;
+                } else if (ch == ')') {
+                    variationDepth = Math.max(variationDepth - 1, 0);
+                } else if (!separator && start < 0) {
+                    start = i;
+                }
+            }
+        }
+        if (!moves.isEmpty()) {
+            addGame(fen, moves, result);
+        }
+    }
+
+    // strips move numbers such as "12." and "12..." and drops NAGs
+    private static void addToken(String token, List<String> moves) {
+        if (token.startsWith("$")) return;
+        int i = 0;
+        while (i < token.length() && Character.isDigit(token.charAt(i))) i++;
+        if (i < token.length() && token.charAt(i) == '.') {
+            while (i < token.length() && token.charAt(i) == '.') i++;
+            token = token.substring(i);
+        } else if (i == token.length()) {
+            return;
+        }
+        if (!token.isEmpty()) moves.add(token);
+    }
+
+    private static boolean isResult(String token) {
+        return token.equals("1-0") || token.equals("0-1") || token.equals("1/2-1/2") || token.equals("*");
+    }
+
+    private static String tagName(String tag) {
+        int end = 1;
+        while (end < tag.length() && !Character.isWhitespace(tag.charAt(end)) && tag.charAt(end) != ']') end++;
+        return tag.substring(1, end);
+    }
+
+    private static String tagValue(String tag) {
+        final int open = tag.indexOf('"');
+        final int close = tag.lastIndexOf('"');
+        return (open < 0 || close <= open) ? "" : tag.substring(open + 1, close);
+    }
+
+    private void addGame(String fen, List<String> moves, String result) {
+        gamesRead++;
+        final ChessGame game;
+        try {
+            game = (fen == null) ? new ChessGame() : ChessGame.fromFen(fen);
+        } catch (IllegalArgumentException e) {
+            gamesSkipped++;
+            return;
+        }
+        final int whiteWeight = switch (result) {
+            case "1-0" -> 2;
+            case "0-1" -> 0;
+            default -> 1;
+        };
+
+        for (int ply = 0; ply < moves.size() && ply < maxPlies; ply++) {
+            final int move;
+            try {
+                move = San.parse(game, moves.get(ply));
+            } catch (IllegalArgumentException e) {
+                gamesSkipped++;
+                return;
+            }
+            final int weight = (game.getTeamTurn() == ChessGame.TeamColor.WHITE) ? whiteWeight : 2 - whiteWeight;
+            positions.computeIfAbsent(game.getZobristKey(), key -> new HashMap<>())
+                    .merge(OpeningBook.toPolyglot(game, move), weight, Integer::sum);
+            game.doMove(move);
+        }
+    }
+
+    /**
+     * @return games read so far, including skipped ones
+     */
+    public int gamesRead() {
+        return gamesRead;
+    }
+
+    /**
+     * @return games that had a move that could not be read or played
+     */
+    public int gamesSkipped() {
+        return gamesSkipped;
+    }
+
+    /**
+     * @return distinct positions collected so far
+     */
+    public int positions() {
+        return positions.size();
+    }
+
+    /**
+     * Writes the book, replacing any existing file. A position whose weights overflow
+     * 16 bits has them scaled down together.
+     *
+     * @param path the book file
+     * @return the number of entries written
+     * @throws IOException if the file cannot be written
+     */
+    public int write(Path path) throws IOException {
+        // flipping the sign bit makes a signed sort give unsigned order
+        final long[] keys = new long[positions.size()];
+        int k = 0;
+        for (long key : positions.keySet()) {
+            keys[k++] = key ^ Long.MIN_VALUE;
+        }
+        Arrays.sort(keys);
+
+        int written = 0;
+        final ByteBuffer buffer = ByteBuffer.allocate(4096 * OpeningBook.ENTRY_BYTES);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (long sortable : keys) {
+                final long key = sortable ^ Long.MIN_VALUE;
+                final Map<Integer, Integer> moves = positions.get(key);
+                final int maxWeight = moves.values().stream().mapToInt(Integer::intValue).max().orElse(0);
+                for (Map.Entry<Integer, Integer> move : moves.entrySet()) {
+                    int weight = move.getValue();
+                    if (weight == 0) continue;
+                    if (maxWeight > MAX_WEIGHT) {
+                        weight = Math.max(1, (int) ((long) weight * MAX_WEIGHT / maxWeight));
+                    }
+                    if (!buffer.hasRemaining()) flush(buffer, channel);
+                    buffer.putLong(key).putShort((short) (int) move.getKey()).putShort((short) weight).putInt(0);
+                    written++;
+                }
+            }
+            flush(buffer, channel);
+        }
+        return written;
+    }
+
+    private static void flush(ByteBuffer buffer, FileChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: OpeningBookBuilder <book> <games.pgn>... [--plies n]");
+            return;
+        }
+        int plies = DEFAULT_PLIES;
+        List<Path> inputs = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--plies") && i + 1 < args.length) {
+                plies = Integer.parseInt(args[++i]);
+            } else {
+                inputs.add(Path.of(args[i]));
+            }
+        }
+
+        OpeningBookBuilder builder = new OpeningBookBuilder(plies);
+        for (Path input : inputs) {
+            builder.addPgn(input);
+        }
+        int entries = builder.write(Path.of(args[0]));
+        System.out.printf("%d games (%d skipped), %d positions, %d entries%n",
+                builder.gamesRead(), builder.gamesSkipped(), builder.positions(), entries);
+    }
+}
@@ -0,0 +1,58 @@
+package chess;
+
+/**
+ * Encodes a move in a single int so move lists can be generated without allocating
+ * {@link ChessMove} and {@link ChessPosition} objects.
+ * <p>
+ * Layout: bits 0-5 hold the start square, bits 6-11 the end square (both 0..63 as in
+ * {@link ChessBoard#squareIndex(int, int)}), and bits 12-14 the promotion piece
+ * (0 for none, otherwise the {@link ChessPiece.PieceType} ordinal plus one).
+ */
+public final class PackedMove {
+    private PackedMove() {}
+
+    private static final ChessPiece.PieceType[] TYPES = ChessPiece.PieceType.values();
+
+    public static int encode(int from, int to, ChessPiece.PieceType promotion) {
+        int promotionCode = (promotion == null) ? 0 : promotion.ordinal() + 1;
+        return from | (to << 6) | (promotionCode << 12);
+    }
+
+    public static int from(int move) {
+        return move & 0x3F;
+    }
+
+    public static int to(int move) {
+        return (move >>> 6) & 0x3F;
+    }
+
+    /**
+     * @return the piece type a pawn promotes to, or null if the move is not a promotion
+     */
+    public static ChessPiece.PieceType promotion(int move) {
+        int promotionCode = (move >>> 12) & 0x7;
+        return (promotionCode == 0) ? null : TYPES[promotionCode - 1];
+    }
+
+    public static boolean isPromotion(int move) {
+        return (move & 0x7000) != 0;
+    }
+
+    /**
+     * @throws IllegalArgumentException if either end of the move is off the board, since
+     *                                  its square index would alias onto another square
+     */
+    public static int fromChessMove(ChessMove move) {
+        ChessPosition start = move.getStartPosition();
+        ChessPosition end = move.getEndPosition();
+        if (!ChessBoard.inBounds(start.getRow(), start.getColumn())
+                || !ChessBoard.inBounds(end.getRow(), end.getColumn())) {
+            throw new IllegalArgumentException("Move off the board: " + move);
+        }
+        return encode(start.getSquare(), end.getSquare(), move.getPromotionPiece());
+    }
+
+    public static ChessMove toChessMove(int move) {
+        return new ChessMove(ChessPosition.of(from(move)), ChessPosition.of(to(move)), promotion(move));
+    }
+}
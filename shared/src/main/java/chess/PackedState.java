@@ -0,0 +1,113 @@
+package chess;
+
+/**
+ * Encodes the parts of a game's state that aren't visible on the board in a single int,
+ * so {@link ChessGame} can save and restore it with one array store per ply.
+ * <p>
+ * Layout: bits 0-3 hold the castling rights ({@link #WHITE_KINGSIDE}, {@link #WHITE_QUEENSIDE},
+ * {@link #BLACK_KINGSIDE}, {@link #BLACK_QUEENSIDE}), bits 4-9 the en passant target square
+ * (0..63 as in {@link ChessBoard#squareIndex(int, int)}, 0 for none since a1 can never be one),
+ * bits 10-17 the halfmove clock and bits 18-31 the fullmove number.
+ */
+public final class PackedState {
+    private PackedState() {}
+
+    public static final int WHITE_KINGSIDE = 1;
+    public static final int WHITE_QUEENSIDE = 2;
+    public static final int BLACK_KINGSIDE = 4;
+    public static final int BLACK_QUEENSIDE = 8;
+    public static final int ALL_CASTLING = 0xF;
+
+    private static final int EN_PASSANT_SHIFT = 4;
+    private static final int HALFMOVE_SHIFT = 10;
+    private static final int FULLMOVE_SHIFT = 18;
+    static final int HALFMOVE_MAX = 0xFF;
+    static final int FULLMOVE_MAX = 0x3FFF;
+
+    /**
+     * State of a new game: every castling right, no en passant target, move 1
+     */
+    public static final int INITIAL = encode(ALL_CASTLING, 0, 0, 1);
+
+    /**
+     * @param castling  castling rights, any combination of the right flags
+     * @param enPassant en passant target square, or 0 for none
+     * @param halfmove  plies since the last capture or pawn move; saturates at 255
+     * @param fullmove  the move number, starting at 1; saturates at 16383
+     */
+    public static int encode(int castling, int enPassant, int halfmove, int fullmove) {
+        return (castling & ALL_CASTLING)
+                | (enPassant << EN_PASSANT_SHIFT)
+                | (Math.min(halfmove, HALFMOVE_MAX) << HALFMOVE_SHIFT)
+                | (Math.min(fullmove, FULLMOVE_MAX) << FULLMOVE_SHIFT);
+    }
+
+    public static int castling(int state) {
+        return state & ALL_CASTLING;
+    }
+
+    /**
+     * @return the en passant target square, or 0 if the last move wasn't a double pawn push
+     */
+    public static int enPassant(int state) {
+        return (state >>> EN_PASSANT_SHIFT) & 0x3F;
+    }
+
+    public static int halfmoveClock(int state) {
+        return (state >>> HALFMOVE_SHIFT) & HALFMOVE_MAX;
+    }
+
+    public static int fullmoveNumber(int state) {
+        return (state >>> FULLMOVE_SHIFT) & FULLMOVE_MAX;
+    }
+
+    /**
+     * @return the castling rights and en passant target, the parts that make two
+     * positions with the same board differ
+     */
+    public static int positionBits(int state) {
+        return state & ((1 << HALFMOVE_SHIFT) - 1);
+    }
+
+    /**
+     * Checks a state word read from outside against the board it belongs to, with the rules
+     * FEN import applies: the en passant target lies on the third or sixth rank behind a pawn
+     * of the side that just moved, every castling right has its king and rook on their home
+     * squares, and the fullmove number starts at 1
+     *
+     * @param state      the state word
+     * @param board      the position it belongs to
+     * @param sideToMove the team to move
+     * @throws IllegalArgumentException if a part of the state cannot occur with that board
+     */
+    public static void validate(int state, ChessBoard board, ChessGame.TeamColor sideToMove) {
+        final int enPassant = enPassant(state);
+        if (enPassant != 0) {
+            final boolean whiteToMove = sideToMove == ChessGame.TeamColor.WHITE;
+            final int expectedRank = whiteToMove ? 5 : 2;
+            final int pushed = whiteToMove ? enPassant - 8 : enPassant + 8;
+            final ChessGame.TeamColor mover = whiteToMove ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+            if ((enPassant >>> 3) != expectedRank
+                    || (board.getBitboard(mover, ChessPiece.PieceType.PAWN) & (1L << pushed)) == 0) {
+                throw new IllegalArgumentException("Bad en passant square " + enPassant);
+            }
+        }
+        final int castling = castling(state);
+        if ((castling & ~ChessGame.inferCastlingRights(board)) != 0) {
+            throw new IllegalArgumentException("Castling rights " + castling + " without king and rook at home");
+        }
+        if (fullmoveNumber(state) == 0) {
+            throw new IllegalArgumentException("Fullmove number 0");
+        }
+    }
+
+    /**
+     * @param color a team
+     * @return the castling right flags belonging to that team
+     */
+    public static int castlingRights(ChessGame.TeamColor color) {
+        return (color == ChessGame.TeamColor.WHITE)
+                ? WHITE_KINGSIDE | WHITE_QUEENSIDE
+                : BLACK_KINGSIDE | BLACK_QUEENSIDE;
+    }
+}
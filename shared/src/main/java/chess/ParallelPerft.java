@@ -0,0 +1,124 @@
+package chess;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Perft spread over a {@link ForkJoinPool}. Every legal move becomes its own task on a
+ * private copy of the position until the remaining depth drops to the split depth;
+ * below that each task counts sequentially with {@link Perft#perft}. Idle workers
+ * steal the unfinished subtrees, so uneven branches still keep every core busy.
+ */
+public final class ParallelPerft {
+    private ParallelPerft() {}
+
+    /**
+     * Remaining depth at or below which a subtree is counted on one thread
+     */
+    public static final int DEFAULT_SPLIT_DEPTH = 3;
+
+    /**
+     * @param nodes  total leaf count
+     * @param divide leaf count below each legal root move, in generation order
+     */
+    public record Result(long nodes, Map<ChessMove, Long> divide) {}
+
+    public static Result run(ChessGame game, int depth) {
+        return run(game, depth, DEFAULT_SPLIT_DEPTH, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Counts the leaf nodes below a position in parallel
+     *
+     * @param game       the position to start from; it is not modified
+     * @param depth      number of plies to search, at least 1
+     * @param splitDepth remaining depth at or below which subtrees are not split further
+     * @param pool       the pool to run the tasks in
+     * @return the total and per-root-move counts
+     */
+    public static Result run(ChessGame game, int depth, int splitDepth, ForkJoinPool pool) {
+        if (depth < 1) {
+            throw new IllegalArgumentException("Depth must be at least 1");
+        }
+        return pool.invoke(new RootTask(game.copy(), depth, splitDepth));
+    }
+
+    // ForkJoinTask is Serializable, but these tasks never leave the pool
+    @SuppressWarnings("serial")
+    private static final class RootTask extends RecursiveTask<Result> {
+        private final ChessGame game;
+        private final int depth;
+        private final int splitDepth;
+
+        RootTask(ChessGame game, int depth, int splitDepth) {
+            this.game = game;
+            this.depth = depth;
+            this.splitDepth = splitDepth;
+        }
+
+        @Override
+        protected Result compute() {
+            MoveList moves = new MoveList();
+            game.legalMoves(game.getTeamTurn(), moves);
+
+            List<SubtreeTask> tasks = new ArrayList<>(moves.size());
+            for (int i = 0; i < moves.size(); i++) {
+                tasks.add(new SubtreeTask(game, moves.get(i), depth - 1, splitDepth));
+            }
+            invokeAll(tasks);
+
+            var divide = new LinkedHashMap<ChessMove, Long>();
+            long total = 0;
+            for (int i = 0; i < tasks.size(); i++) {
+                long nodes = tasks.get(i).join();
+                divide.put(PackedMove.toChessMove(moves.get(i)), nodes);
+                total += nodes;
+            }
+            return new Result(total, divide);
+        }
+    }
+
+    // counts the subtree after one move, played on the task's own copy of the parent position
+    @SuppressWarnings("serial")
+    private static final class SubtreeTask extends RecursiveTask<Long> {
+        private final ChessGame parent;
+        private final int move;
+        private final int depth;
+        private final int splitDepth;
+
+        SubtreeTask(ChessGame parent, int move, int depth, int splitDepth) {
+            this.parent = parent;
+            this.move = move;
+            this.depth = depth;
+            this.splitDepth = splitDepth;
+        }
+
+        @Override
+        protected Long compute() {
+            // the parent is only read once its children are forked, so copying it here is safe
+            ChessGame game = parent.copy();
+            game.doMove(move);
+            if (depth <= splitDepth) {
+                return Perft.perft(game, depth);
+            }
+
+            MoveList moves = new MoveList();
+            game.legalMoves(game.getTeamTurn(), moves);
+            List<SubtreeTask> tasks = new ArrayList<>(moves.size());
+            for (int i = 0; i < moves.size(); i++) {
+                tasks.add(new SubtreeTask(game, moves.get(i), depth - 1, splitDepth));
+            }
+            invokeAll(tasks);
+
+            long total = 0;
+            for (SubtreeTask task : tasks) {
+                total += task.join();
+            }
+            return total;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package chess;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Perft (performance test) move-path enumeration: counts the leaf nodes of the legal
+ * move tree to a fixed depth. The counts for standard positions are published, so a
+ * mismatch pinpoints a move generation bug, and the node rate measures generator speed.
+ * <p>
+ * Run from the command line with {@code java -cp shared/target/classes chess.Perft <depth> [position] [threads]},
+ * where position is the name of one of the {@link #STANDARD_POSITIONS} or a quoted FEN string, and
+ * more than one thread counts with {@link ParallelPerft}.
+ */
+public final class Perft {
+    private Perft() {}
+
+    /**
+     * A test position in FEN with its published leaf counts; {@code expected[d - 1]} is the count at depth d
+     */
+    public record Position(String name, String fen, long... expected) {
+        public ChessGame toGame() {
+            return ChessGame.fromFen(fen);
+        }
+    }
+
+    public static final List<Position> STANDARD_POSITIONS = List.of(
+            new Position("start", "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+                    20, 400, 8_902, 197_281, 4_865_609),
+            new Position("kiwipete", "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+                    48, 2_039, 97_862, 4_085_603),
+            new Position("position3", "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+                    14, 191, 2_812, 43_238, 674_624),
+            new Position("position4", "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+                    6, 264, 9_467, 422_333),
+            new Position("position5", "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+                    44, 1_486, 62_379, 2_103_487),
+            new Position("position6", "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+                    46, 2_079, 89_890, 3_894_594)
+    );
+
+    /**
+     * Counts the leaf nodes of the legal move tree below the current position
+     *
+     * @param game  the position to start from; it is restored before returning
+     * @param depth number of plies to search
+     * @return number of move sequences of exactly that length
+     */
+    public static long perft(ChessGame game, int depth) {
+        MoveList[] lists = new MoveList[Math.max(depth, 1)];
+        for (int i = 0; i < lists.length; i++) {
+            lists[i] = new MoveList();
+        }
+        return perft(game, depth, lists);
+    }
+
+    private static long perft(ChessGame game, int depth, MoveList[] lists) {
+        if (depth == 0) return 1;
+        MoveList moves = lists[depth - 1];
+        moves.clear();
+        game.legalMoves(game.getTeamTurn(), moves);
+        if (depth == 1) return moves.size();
+
+        long nodes = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            game.doMove(moves.get(i));
+            nodes += perft(game, depth - 1, lists);
+            game.undoMove();
+        }
+        return nodes;
+    }
+
+    /**
+     * Same count as {@link #perft} but built on {@link ChessGame#validMoves(int, MoveList)},
+     * the make/check/unmake reference, for cross-checking the legal generator
+     */
+    public static long perftReference(ChessGame game, int depth) {
+        if (depth == 0) return 1;
+        MoveList moves = new MoveList();
+        game.validMoves(game.getTeamTurn(), moves);
+
+        long nodes = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            game.doMove(moves.get(i));
+            nodes += perftReference(game, depth - 1);
+            game.undoMove();
+        }
+        return nodes;
+    }
+
+    /**
+     * Splits the perft count by root move
+     *
+     * @return leaf count below each legal root move, in generation order
+     */
+    public static Map<ChessMove, Long> divide(ChessGame game, int depth) {
+        MoveList moves = new MoveList();
+        game.legalMoves(game.getTeamTurn(), moves);
+
+        var counts = new LinkedHashMap<ChessMove, Long>();
+        for (int i = 0; i < moves.size(); i++) {
+            game.doMove(moves.get(i));
+            counts.put(PackedMove.toChessMove(moves.get(i)), perft(game, depth - 1));
+            game.undoMove();
+        }
+        return counts;
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("Usage: Perft <depth> [position] [threads]");
+            System.out.print("Positions:");
+            STANDARD_POSITIONS.forEach(p -> System.out.print(" " + p.name()));
+            System.out.println();
+            return;
+        }
+        int depth = Integer.parseInt(args[0]);
+        String name = args.length > 1 ? args[1] : "start";
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+        Position position = STANDARD_POSITIONS.stream()
+                .filter(p -> p.name().equals(name))
+                .findFirst()
+                .orElseGet(() -> {
+                    if (name.indexOf('/') < 0) throw new IllegalArgumentException("Unknown position: " + name);
+                    return new Position("fen", name);
+                });
+
+        ChessGame game = position.toGame();
+        System.out.println(BoardPrinter.boardString(game.getBoard()));
+
+        long start = System.nanoTime();
+        Map<ChessMove, Long> counts;
+        if (threads > 1) {
+            try (var pool = new ForkJoinPool(threads)) {
+                counts = ParallelPerft.run(game, depth, ParallelPerft.DEFAULT_SPLIT_DEPTH, pool).divide();
+            }
+        } else {
+            counts = divide(game, depth);
+        }
+        long total = 0;
+        for (var entry : counts.entrySet()) {
+            System.out.println(entry.getKey() + " " + entry.getValue());
+            total += entry.getValue();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        System.out.println();
+        System.out.println("Nodes: " + total);
+        if (depth <= position.expected().length) {
+            long expected = position.expected()[depth - 1];
+            System.out.println("Expected: " + expected + (expected == total ? " (ok)" : " (MISMATCH)"));
+        }
+        System.out.printf("Time: %.3f s, %.0f nodes/s%n", elapsed / 1e9, total / (elapsed / 1e9));
+    }
+}
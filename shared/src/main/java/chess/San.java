@@ -0,0 +1,109 @@
+package chess;
+
+/**
+ * Reads Standard Algebraic Notation as written in PGN files, e.g. {@code Nbd7}, {@code exd5},
+ * {@code e8=Q+}, {@code O-O-O}. Check and annotation suffixes are ignored; "0-0" castling
+ * and promotions without '=' are accepted as well.
+ * <p>
+ * The text only has to single out one legal move, so it is matched against the legal
+ * moves of the position rather than resolved square by square.
+ */
+final class San {
+    private San() {}
+
+    /**
+     * @param game the position the move is played in
+     * @param san  the move text
+     * @return the move as a {@link PackedMove}
+     * @throws IllegalArgumentException if the text names no legal move or more than one
+     */
+    static int parse(ChessGame game, String san) {
+        int end = san.length();
+        while (end > 0 && "+#!?".indexOf(san.charAt(end - 1)) >= 0) end--;
+        final String text = san.substring(0, end);
+
+        final ChessGame.TeamColor turn = game.getTeamTurn();
+        final MoveList moves = new MoveList();
+        game.legalMoves(turn, moves);
+
+        if (text.equals("O-O") || text.equals("0-0") || text.equals("O-O-O") || text.equals("0-0-0")) {
+            final int king = ChessGame.kingHome(turn);
+            final int to = king + ((text.length() == 3) ? 2 : -2);
+            return single(moves, game, san, ChessPiece.PieceType.KING, to, null, -1, -1);
+        }
+
+        int i = 0;
+        ChessPiece.PieceType type = ChessPiece.PieceType.PAWN;
+        if (i < end && "KQBNR".indexOf(text.charAt(i)) >= 0) {
+            type = pieceType(text.charAt(i++));
+        }
+
+        ChessPiece.PieceType promotion = null;
+        int squareEnd = end;
+        if (type == ChessPiece.PieceType.PAWN && end >= 3 && "QBNR".indexOf(text.charAt(end - 1)) >= 0) {
+            promotion = pieceType(text.charAt(end - 1));
+            squareEnd = (text.charAt(end - 2) == '=') ? end - 2 : end - 1;
+        }
+        if (squareEnd - i < 2) throw invalid(san);
+        final int to = square(text.charAt(squareEnd - 2), text.charAt(squareEnd - 1), san);
+
+        // whatever sits between the piece letter and the target: disambiguation and 'x'
+        int fromFile = -1;
+        int fromRank = -1;
+        for (int j = i; j < squareEnd - 2; j++) {
+            final char ch = text.charAt(j);
+            if (ch >= 'a' && ch <= 'h') {
+                fromFile = ch - 'a';
+            } else if (ch >= '1' && ch <= '8') {
+                fromRank = ch - '1';
+            } else if (ch != 'x' && ch != ':') {
+                throw invalid(san);
+            }
+        }
+        return single(moves, game, san, type, to, promotion, fromFile, fromRank);
+    }
+
+    private static int single(MoveList moves, ChessGame game, String san, ChessPiece.PieceType type,
+                              int to, ChessPiece.PieceType promotion, int fromFile, int fromRank) {
+        final ChessBoard board = game.getBoard();
+        int found = -1;
+        for (int i = 0; i < moves.size(); i++) {
+            final int move = moves.get(i);
+            final int from = PackedMove.from(move);
+            if (PackedMove.to(move) != to
+                    || board.getPiece(from).getPieceType() != type
+                    || PackedMove.promotion(move) != promotion
+                    || (fromFile >= 0 && (from & 7) != fromFile)
+                    || (fromRank >= 0 && (from >>> 3) != fromRank)) {
+                continue;
+            }
+            if (found >= 0) {
+                throw new IllegalArgumentException("Ambiguous move: " + san);
+            }
+            found = move;
+        }
+        if (found < 0) {
+            throw new IllegalArgumentException("Illegal move: " + san);
+        }
+        return found;
+    }
+
+    private static int square(char file, char rank, String san) {
+        if (file < 'a' || file > 'h' || rank < '1' || rank > '8') throw invalid(san);
+        return (rank - '1') * 8 + (file - 'a');
+    }
+
+    private static ChessPiece.PieceType pieceType(char letter) {
+        return switch (letter) {
+            case 'K' -> ChessPiece.PieceType.KING;
+            case 'Q' -> ChessPiece.PieceType.QUEEN;
+            case 'B' -> ChessPiece.PieceType.BISHOP;
+            case 'N' -> ChessPiece.PieceType.KNIGHT;
+            default -> ChessPiece.PieceType.ROOK;
+        };
+    }
+
+    private static IllegalArgumentException invalid(String san) {
+        return new IllegalArgumentException("Invalid SAN move: " + san);
+    }
+}
@@ -0,0 +1,489 @@
+package chess;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Chooses a move: iterative-deepening alpha-beta search with a quiescence search over
+ * captures, run Lazy SMP style. Every thread searches the whole tree on its own copy of
+ * the position, helpers starting one ply deeper on odd thread numbers, and they share
+ * a {@link TranspositionTable}: what one thread stores cuts off or orders another's
+ * search. The deepest completed iteration wins.
+ * <p>
+ * The table outlives a search, so consecutive searches of the same game reuse it. Its
+ * size defaults to the {@code chess.search.hashMegabytes} system property, or 16 MB.
+ * <p>
+ * A search ends when it reaches the depth limit, runs out of time or nodes, or another
+ * thread calls {@link #stop()}; the best move of the last completed iteration is returned.
+ * An engine runs one search at a time: a call made while another is running waits for it
+ * to finish, since both would share the table's generation and {@link #stop()}.
+ * <p>
+ * Run from the command line with {@code java -cp shared/target/classes chess.SearchEngine "<fen>" [millis] [threads]}.
+ */
+public final class SearchEngine implements AutoCloseable {
+
+    public static final int MAX_PLY = 128;
+    /**
+     * Score of being checkmated at the root; mate in n plies scores {@code MATE_SCORE - n}
+     */
+    public static final int MATE_SCORE = 30_000;
+    private static final int INFINITY = MATE_SCORE + 1;
+    // nodes a thread counts locally before checking the limits
+    private static final int CHECK_INTERVAL = 1024;
+    private static final int DEFAULT_HASH_MEGABYTES = Integer.getInteger("chess.search.hashMegabytes", 16);
+
+    /**
+     * What a search may spend; 0 means no limit for that resource
+     *
+     * @param depth  maximum depth in plies
+     * @param millis maximum time in milliseconds
+     * @param nodes  maximum node count, over all threads
+     */
+    public record Limits(int depth, long millis, long nodes) {
+        public static Limits depth(int depth) {
+            return new Limits(depth, 0, 0);
+        }
+
+        public static Limits time(long millis) {
+            return new Limits(0, millis, 0);
+        }
+
+        public static Limits nodes(long nodes) {
+            return new Limits(0, 0, nodes);
+        }
+    }
+
+    /**
+     * @param bestMove           the move to play, or null if the side to move has none
+     * @param score              centipawns for the side to move, or a mate score
+     * @param depth              the deepest completed iteration
+     * @param nodes              nodes searched over all threads
+     * @param elapsedNanos       wall time of the search
+     * @param principalVariation the expected line, starting with bestMove
+     */
+    public record Result(ChessMove bestMove, int score, int depth, long nodes, long elapsedNanos,
+                         List<ChessMove> principalVariation) {
+        public long nodesPerSecond() {
+            return (elapsedNanos == 0) ? 0 : nodes * 1_000_000_000L / elapsedNanos;
+        }
+    }
+
+    /**
+     * @return True if the score is a forced mate for either side
+     */
+    public static boolean isMateScore(int score) {
+        return Math.abs(score) >= MATE_SCORE - MAX_PLY;
+    }
+
+    private final int threads;
+    private final ExecutorService pool;
+    private final TranspositionTable table;
+    private volatile SearchRun current;
+
+    /**
+     * @param threads number of search threads, at least 1
+     */
+    public SearchEngine(int threads) {
+        this(threads, DEFAULT_HASH_MEGABYTES);
+    }
+
+    /**
+     * @param threads        number of search threads, at least 1
+     * @param hashMegabytes  size of the transposition table, at least 1
+     */
+    public SearchEngine(int threads, int hashMegabytes) {
+        this(threads, new TranspositionTable(hashMegabytes));
+    }
+
+    /**
+     * @param threads number of search threads, at least 1
+     * @param table   the transposition table to search with
+     */
+    public SearchEngine(int threads, TranspositionTable table) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Need at least one search thread");
+        }
+        this.threads = threads;
+        this.table = table;
+        this.pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "search");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public TranspositionTable getTranspositionTable() {
+        return table;
+    }
+
+    /**
+     * Searches a position, blocking until a limit is reached or {@link #stop()} is called
+     *
+     * @param game   the position to search; it is not modified
+     * @param limits what the search may spend
+     * @return the best move found and the line behind it
+     */
+    public synchronized Result search(ChessGame game, Limits limits) {
+        final long start = System.nanoTime();
+        final SearchRun run = new SearchRun(limits, start);
+        current = run;
+        table.newSearch();
+
+        List<Future<Outcome>> futures = new ArrayList<>(threads);
+        for (int id = 0; id < threads; id++) {
+            futures.add(pool.submit(new Searcher(id, game.copy(), run, table)));
+        }
+
+        Outcome best = null;
+        try {
+            for (int id = 0; id < threads; id++) {
+                Outcome outcome = futures.get(id).get();
+                // the main thread decides when the search is over
+                if (id == 0) run.stopped = true;
+                if (outcome != null && (best == null || outcome.depth > best.depth)) {
+                    best = outcome;
+                }
+            }
+        } catch (InterruptedException e) {
+            run.stopped = true;
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            run.stopped = true;
+            throw new IllegalStateException("Search failed", e.getCause());
+        } finally {
+            current = null;
+        }
+
+        final long elapsed = System.nanoTime() - start;
+        if (best == null) {
+            return fallback(game, run.nodes.get(), elapsed);
+        }
+        List<ChessMove> pv = new ArrayList<>(best.pv.length);
+        for (int move : best.pv) {
+            pv.add(PackedMove.toChessMove(move));
+        }
+        return new Result(pv.get(0), best.score, best.depth, run.nodes.get(), elapsed, List.copyOf(pv));
+    }
+
+    // stopped before the first iteration finished: any legal move beats none
+    private static Result fallback(ChessGame game, long nodes, long elapsed) {
+        MoveList moves = new MoveList();
+        game.legalMoves(game.getTeamTurn(), moves);
+        if (moves.isEmpty()) {
+            int score = game.isInCheck(game.getTeamTurn()) ? -MATE_SCORE : 0;
+            return new Result(null, score, 0, nodes, elapsed, List.of());
+        }
+        ChessMove move = PackedMove.toChessMove(moves.get(0));
+        return new Result(move, 0, 0, nodes, elapsed, List.of(move));
+    }
+
+    /**
+     * Ends the running search, if any, as soon as its threads notice; safe to call from any thread
+     */
+    public void stop() {
+        SearchRun run = current;
+        if (run != null) run.stopped = true;
+    }
+
+    @Override
+    public void close() {
+        stop();
+        pool.shutdownNow();
+    }
+
+    // limits and shared counters of one search call
+    private static final class SearchRun {
+        final int maxDepth;
+        final long deadline;
+        final long maxNodes;
+        final AtomicLong nodes = new AtomicLong();
+        volatile boolean stopped;
+
+        SearchRun(Limits limits, long start) {
+            this.maxDepth = (limits.depth() <= 0) ? MAX_PLY - 1 : Math.min(limits.depth(), MAX_PLY - 1);
+            this.deadline = (limits.millis() <= 0) ? 0 : start + limits.millis() * 1_000_000L;
+            this.maxNodes = limits.nodes();
+        }
+    }
+
+    private record Outcome(int depth, int score, int[] pv) {}
+
+    // one thread's search on its own copy of the position
+    private static final class Searcher implements Callable<Outcome> {
+        private final int id;
+        private final ChessGame game;
+        private final ChessBoard board;
+        private final SearchRun run;
+        private final TranspositionTable table;
+
+        private final MoveList[] lists = new MoveList[MAX_PLY];
+        private final int[][] orderScores = new int[MAX_PLY][];
+        private final int[][] pv = new int[MAX_PLY][MAX_PLY];
+        private final int[] pvLength = new int[MAX_PLY];
+        // moves of the previous iteration's principal variation, tried first at their ply
+        private final int[] pvHints = new int[MAX_PLY];
+        private int pendingNodes;
+
+        Searcher(int id, ChessGame game, SearchRun run, TranspositionTable table) {
+            this.id = id;
+            this.game = game;
+            this.board = game.getBoard();
+            this.run = run;
+            this.table = table;
+            for (int ply = 0; ply < MAX_PLY; ply++) {
+                lists[ply] = new MoveList();
+                orderScores[ply] = new int[256];
+            }
+            Arrays.fill(pvHints, -1);
+        }
+
+        @Override
+        public Outcome call() {
+            Outcome best = null;
+            for (int depth = 1 + (id & 1); depth <= run.maxDepth && !run.stopped; depth++) {
+                int score = negamax(depth, 0, -INFINITY, INFINITY);
+                if (run.stopped || pvLength[0] == 0) break;
+
+                int[] line = Arrays.copyOf(pv[0], pvLength[0]);
+                best = new Outcome(depth, score, line);
+                Arrays.fill(pvHints, -1);
+                System.arraycopy(line, 0, pvHints, 0, line.length);
+                if (isMateScore(score) && MATE_SCORE - Math.abs(score) <= depth) break;
+            }
+            run.nodes.addAndGet(pendingNodes);
+            return best;
+        }
+
+        private int negamax(int depth, int ply, int alpha, int beta) {
+            countNode();
+            pvLength[ply] = 0;
+            if (run.stopped) return 0;
+            if (ply > 0 && isDrawn()) return 0;
+            if (depth <= 0 || ply >= MAX_PLY - 1) return quiescence(ply, alpha, beta);
+
+            final long key = game.getZobristKey();
+            final long entry = table.probe(key);
+            int hashMove = 0;
+            if (entry != 0) {
+                hashMove = TranspositionTable.move(entry);
+                // the root always searches, so the result has a move and a line
+                if (ply > 0 && TranspositionTable.depth(entry) >= depth) {
+                    final int score = scoreFromTable(TranspositionTable.score(entry), ply);
+                    final int bound = TranspositionTable.bound(entry);
+                    if (bound == TranspositionTable.EXACT
+                            || (bound == TranspositionTable.LOWER && score >= beta)
+                            || (bound == TranspositionTable.UPPER && score <= alpha)) {
+                        return score;
+                    }
+                }
+            }
+
+            final ChessGame.TeamColor turn = game.getTeamTurn();
+            final MoveList moves = lists[ply];
+            moves.clear();
+            game.legalMoves(turn, moves);
+            if (moves.isEmpty()) {
+                return game.isInCheck(turn) ? -MATE_SCORE + ply : 0;
+            }
+            // checkmate takes precedence over the fifty-move rule, so it is only applied here
+            if (ply > 0 && PackedState.halfmoveClock(game.getState()) >= 100) return 0;
+            scoreMoves(moves, ply, hashMove);
+
+            final int originalAlpha = alpha;
+            int best = -INFINITY;
+            int bestMove = 0;
+            for (int i = 0; i < moves.size(); i++) {
+                int move = pickNext(moves, ply, i);
+                game.doMove(move);
+                int score = -negamax(depth - 1, ply + 1, -beta, -alpha);
+                game.undoMove();
+                if (run.stopped) return 0;
+
+                if (score > best) {
+                    best = score;
+                    bestMove = move;
+                    if (score > alpha) {
+                        alpha = score;
+                        updatePv(ply, move);
+                        if (alpha >= beta) break;
+                    }
+                }
+            }
+
+            final int bound = (best >= beta) ? TranspositionTable.LOWER
+                    : (best > originalAlpha) ? TranspositionTable.EXACT : TranspositionTable.UPPER;
+            table.store(key, bestMove, scoreToTable(best, ply), depth, bound);
+            return best;
+        }
+
+        // mate scores are stored relative to the stored position rather than the root
+        private static int scoreToTable(int score, int ply) {
+            if (score >= MATE_SCORE - MAX_PLY) return score + ply;
+            if (score <= -MATE_SCORE + MAX_PLY) return score - ply;
+            return score;
+        }
+
+        private static int scoreFromTable(int score, int ply) {
+            if (score >= MATE_SCORE - MAX_PLY) return score - ply;
+            if (score <= -MATE_SCORE + MAX_PLY) return score + ply;
+            return score;
+        }
+
+        // searches captures and promotions until the position is quiet, or every evasion when in check
+        private int quiescence(int ply, int alpha, int beta) {
+            countNode();
+            pvLength[ply] = 0;
+            if (run.stopped) return 0;
+            if (ply >= MAX_PLY - 1) return Evaluation.evaluate(game);
+
+            final ChessGame.TeamColor turn = game.getTeamTurn();
+            final boolean inCheck = game.isInCheck(turn);
+            int best = -INFINITY;
+            if (!inCheck) {
+                best = Evaluation.evaluate(game);
+                if (best >= beta) return best;
+                if (best > alpha) alpha = best;
+            }
+
+            final MoveList moves = lists[ply];
+            moves.clear();
+            game.legalMoves(turn, moves);
+            if (inCheck && moves.isEmpty()) return -MATE_SCORE + ply;
+            if (!inCheck) keepTactical(moves);
+            scoreMoves(moves, ply, 0);
+
+            for (int i = 0; i < moves.size(); i++) {
+                int move = pickNext(moves, ply, i);
+                game.doMove(move);
+                int score = -quiescence(ply + 1, -beta, -alpha);
+                game.undoMove();
+                if (run.stopped) return 0;
+
+                if (score > best) {
+                    best = score;
+                    if (score > alpha) {
+                        alpha = score;
+                        updatePv(ply, move);
+                        if (alpha >= beta) break;
+                    }
+                }
+            }
+            return best;
+        }
+
+        private boolean isDrawn() {
+            return game.isInsufficientMaterial() || game.repetitions() > 0;
+        }
+
+        private void keepTactical(MoveList moves) {
+            int kept = 0;
+            for (int i = 0; i < moves.size(); i++) {
+                int move = moves.get(i);
+                if (isCapture(move) || PackedMove.isPromotion(move)) moves.set(kept++, move);
+            }
+            moves.truncate(kept);
+        }
+
+        private boolean isCapture(int move) {
+            final int to = PackedMove.to(move);
+            if (board.getPiece(to) != null) return true;
+            return to == PackedState.enPassant(game.getState())
+                    && board.getPiece(PackedMove.from(move)).getPieceType() == ChessPiece.PieceType.PAWN;
+        }
+
+        // principal variation move first, then the table's move, then captures by most valuable
+        // victim and least valuable attacker
+        private void scoreMoves(MoveList moves, int ply, int hashMove) {
+            int[] scores = orderScores[ply];
+            if (scores.length < moves.size()) {
+                scores = orderScores[ply] = new int[moves.size()];
+            }
+            for (int i = 0; i < moves.size(); i++) {
+                int move = moves.get(i);
+                int score = 0;
+                if (move == pvHints[ply]) {
+                    score = 1_000_000;
+                } else if (move == hashMove) {
+                    score = 900_000;
+                } else {
+                    ChessPiece victim = board.getPiece(PackedMove.to(move));
+                    if (victim != null) {
+                        ChessPiece attacker = board.getPiece(PackedMove.from(move));
+                        score = 10_000 + 10 * Evaluation.pieceValue(victim.getPieceType())
+                                - Evaluation.pieceValue(attacker.getPieceType()) / 10;
+                    }
+                    if (PackedMove.isPromotion(move)) {
+                        score += 9_000 + Evaluation.pieceValue(PackedMove.promotion(move));
+                    }
+                }
+                scores[i] = score;
+            }
+        }
+
+        // selection sort step: swaps the best remaining move into slot i
+        private int pickNext(MoveList moves, int ply, int i) {
+            final int[] scores = orderScores[ply];
+            int bestIndex = i;
+            for (int j = i + 1; j < moves.size(); j++) {
+                if (scores[j] > scores[bestIndex]) bestIndex = j;
+            }
+            if (bestIndex != i) {
+                int move = moves.get(i);
+                moves.set(i, moves.get(bestIndex));
+                moves.set(bestIndex, move);
+                int score = scores[i];
+                scores[i] = scores[bestIndex];
+                scores[bestIndex] = score;
+            }
+            return moves.get(i);
+        }
+
+        // moves are only searched below MAX_PLY - 1, so the child line always exists
+        private void updatePv(int ply, int move) {
+            pv[ply][0] = move;
+            System.arraycopy(pv[ply + 1], 0, pv[ply], 1, pvLength[ply + 1]);
+            pvLength[ply] = pvLength[ply + 1] + 1;
+        }
+
+        private void countNode() {
+            if (++pendingNodes < CHECK_INTERVAL) return;
+            final long total = run.nodes.addAndGet(pendingNodes);
+            pendingNodes = 0;
+            if ((run.maxNodes > 0 && total >= run.maxNodes)
+                    || (run.deadline != 0 && System.nanoTime() - run.deadline >= 0)) {
+                run.stopped = true;
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("Usage: SearchEngine <fen> [millis] [threads]");
+            return;
+        }
+        ChessGame game = ChessGame.fromFen(args[0]);
+        long millis = args.length > 1 ? Long.parseLong(args[1]) : 1000;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+
+        System.out.println(BoardPrinter.boardString(game.getBoard()));
+        try (SearchEngine engine = new SearchEngine(threads, new TranspositionTable(DEFAULT_HASH_MEGABYTES, true))) {
+            Result result = engine.search(game, Limits.time(millis));
+            System.out.println("Best move: " + result.bestMove());
+            System.out.println("Score: " + result.score() + " (depth " + result.depth() + ")");
+            System.out.println("PV: " + result.principalVariation());
+            System.out.printf("Nodes: %d, %d nodes/s%n", result.nodes(), result.nodesPerSecond());
+            System.out.println(engine.getTranspositionTable());
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package chess;
+
+/**
+ * Constant-time attack lookup for the sliding pieces using magic bitboards.
+ * <p>
+ * For every square the blockers that matter (the ray squares short of the board edge)
+ * are multiplied by a per-square magic number and shifted down to an index into a
+ * table of precomputed attack sets. The magics are searched for once when the class
+ * loads, with a fixed seed so every run builds the same tables.
+ * <p>
+ * {@link #rookAttacksSlow(int, long)} and {@link #bishopAttacksSlow(int, long)} walk the
+ * rays square by square and are kept as the reference the tables are built and checked against.
+ */
+public final class SlidingAttacks {
+    private SlidingAttacks() {}
+
+    private static final int[][] ROOK_DIRS = {{+1, 0}, {-1, 0}, {0, +1}, {0, -1}};
+    private static final int[][] BISHOP_DIRS = {{+1, +1}, {+1, -1}, {-1, +1}, {-1, -1}};
+
+    private static final long[] ROOK_MASKS = new long[64];
+    private static final long[] ROOK_MAGICS = new long[64];
+    private static final int[] ROOK_SHIFTS = new int[64];
+    private static final long[][] ROOK_TABLE = new long[64][];
+
+    private static final long[] BISHOP_MASKS = new long[64];
+    private static final long[] BISHOP_MAGICS = new long[64];
+    private static final int[] BISHOP_SHIFTS = new int[64];
+    private static final long[][] BISHOP_TABLE = new long[64][];
+
+    private static long seed = 0x2545F4914F6CDD1DL;
+
+    static {
+        for (int square = 0; square < 64; square++) {
+            ROOK_MASKS[square] = relevantMask(square, ROOK_DIRS);
+            BISHOP_MASKS[square] = relevantMask(square, BISHOP_DIRS);
+            initMagic(square, ROOK_DIRS, ROOK_MASKS, ROOK_MAGICS, ROOK_SHIFTS, ROOK_TABLE);
+            initMagic(square, BISHOP_DIRS, BISHOP_MASKS, BISHOP_MAGICS, BISHOP_SHIFTS, BISHOP_TABLE);
+        }
+    }
+
+    /**
+     * @param square    the rook's square
+     * @param occupancy every occupied square on the board
+     * @return squares the rook attacks, including the first blocker on each ray
+     */
+    public static long rookAttacks(int square, long occupancy) {
+        long blockers = occupancy & ROOK_MASKS[square];
+        return ROOK_TABLE[square][(int) ((blockers * ROOK_MAGICS[square]) >>> ROOK_SHIFTS[square])];
+    }
+
+    /**
+     * @param square    the bishop's square
+     * @param occupancy every occupied square on the board
+     * @return squares the bishop attacks, including the first blocker on each ray
+     */
+    public static long bishopAttacks(int square, long occupancy) {
+        long blockers = occupancy & BISHOP_MASKS[square];
+        return BISHOP_TABLE[square][(int) ((blockers * BISHOP_MAGICS[square]) >>> BISHOP_SHIFTS[square])];
+    }
+
+    public static long queenAttacks(int square, long occupancy) {
+        return rookAttacks(square, occupancy) | bishopAttacks(square, occupancy);
+    }
+
+    /**
+     * Reference rook attacks computed by walking each ray until it leaves the board or hits a piece
+     */
+    public static long rookAttacksSlow(int square, long occupancy) {
+        return rayAttacks(square, occupancy, ROOK_DIRS);
+    }
+
+    /**
+     * Reference bishop attacks computed by walking each ray until it leaves the board or hits a piece
+     */
+    public static long bishopAttacksSlow(int square, long occupancy) {
+        return rayAttacks(square, occupancy, BISHOP_DIRS);
+    }
+
+    private static long rayAttacks(int square, long occupancy, int[][] dirs) {
+        final int row = (square >>> 3) + 1;
+        final int col = (square & 7) + 1;
+        long attacks = 0L;
+        for (int[] dir : dirs) {
+            int r = row + dir[0];
+            int c = col + dir[1];
+            while (ChessBoard.inBounds(r, c)) {
+                long bit = 1L << ChessBoard.squareIndex(r, c);
+                attacks |= bit;
+                if ((occupancy & bit) != 0) break;
+                r += dir[0];
+                c += dir[1];
+            }
+        }
+        return attacks;
+    }
+
+    //ray squares whose occupancy changes the attack set: everything but the last square before the edge
+    private static long relevantMask(int square, int[][] dirs) {
+        final int row = (square >>> 3) + 1;
+        final int col = (square & 7) + 1;
+        long mask = 0L;
+        for (int[] dir : dirs) {
+            int r = row + dir[0];
+            int c = col + dir[1];
+            while (ChessBoard.inBounds(r + dir[0], c + dir[1])) {
+                mask |= 1L << ChessBoard.squareIndex(r, c);
+                r += dir[0];
+                c += dir[1];
+            }
+        }
+        return mask;
+    }
+
+    private static void initMagic(int square, int[][] dirs, long[] masks, long[] magics, int[] shifts, long[][] tables) {
+        final long mask = masks[square];
+        final int bits = Long.bitCount(mask);
+        final int size = 1 << bits;
+
+        // enumerate every subset of the mask (carry-rippler) with its reference attack set
+        long[] occupancies = new long[size];
+        long[] attacks = new long[size];
+        long subset = 0L;
+        for (int i = 0; i < size; i++) {
+            occupancies[i] = subset;
+            attacks[i] = rayAttacks(square, subset, dirs);
+            subset = (subset - mask) & mask;
+        }
+
+        long[] table = new long[size];
+        int[] epoch = new int[size];
+        for (int attempt = 1; ; attempt++) {
+            long magic = nextRandom() & nextRandom() & nextRandom();
+            if (Long.bitCount((mask * magic) & 0xFF00000000000000L) < 6) continue;
+
+            boolean collision = false;
+            for (int i = 0; i < size && !collision; i++) {
+                int index = (int) ((occupancies[i] * magic) >>> (64 - bits));
+                if (epoch[index] != attempt) {
+                    epoch[index] = attempt;
+                    table[index] = attacks[i];
+                } else if (table[index] != attacks[i]) {
+                    collision = true;
+                }
+            }
+            if (!collision) {
+                magics[square] = magic;
+                shifts[square] = 64 - bits;
+                tables[square] = table;
+                return;
+            }
+        }
+    }
+
+    private static long nextRandom() {
+        seed ^= seed >>> 12;
+        seed ^= seed << 25;
+        seed ^= seed >>> 27;
+        return seed * 0x2545F4914F6CDD1DL;
+    }
+}
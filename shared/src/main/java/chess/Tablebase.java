@@ -0,0 +1,205 @@
+package chess;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Perfect play for king and one or two pieces against a bare king, read from tables that
+ * {@link TablebaseGenerator} writes. Each table is memory-mapped, so a probe is one index
+ * computation and one byte read, and tables can be shared between threads.
+ * <p>
+ * A table holds one byte per position, addressed by
+ * {@code ((((sideToMove * 64 + strongKing) * 64 + weakKing) * 64 + piece1) * 64 + piece2)}
+ * with side to move 0 for the stronger side and squares as in {@link ChessBoard#squareIndex}.
+ * Tables are stored with white as the stronger side; positions where black is stronger are
+ * probed flipped top to bottom. A byte of 0 is a draw, 1..254 are mate in that many plies
+ * minus one (a win for the stronger side, whoever is to move), and {@value #ILLEGAL_VALUE}
+ * marks positions that cannot occur. Positions with castling rights are not covered.
+ */
+public final class Tablebase {
+
+    static final int ILLEGAL_VALUE = 0xFF;
+
+    /**
+     * The endgames covered, named by the stronger side's pieces followed by the lone king
+     */
+    public enum Material {
+        KQK(ChessPiece.PieceType.QUEEN),
+        KRK(ChessPiece.PieceType.ROOK),
+        KPK(ChessPiece.PieceType.PAWN),
+        KBNK(ChessPiece.PieceType.BISHOP, ChessPiece.PieceType.KNIGHT);
+
+        final ChessPiece.PieceType[] pieces;
+
+        Material(ChessPiece.PieceType... pieces) {
+            this.pieces = pieces;
+        }
+
+        /**
+         * @return the number of pieces on the board, kings included
+         */
+        public int pieceCount() {
+            return 2 + pieces.length;
+        }
+
+        /**
+         * @return the number of positions, i.e. the table's size in bytes
+         */
+        public int size() {
+            return 2 << (6 * pieceCount());
+        }
+
+        public String fileName() {
+            return name() + ".tb";
+        }
+    }
+
+    /** The result for the side to move */
+    public enum Outcome { WIN, DRAW, LOSS }
+
+    /**
+     * @param outcome the result for the side to move with best play
+     * @param plies   plies until mate, 0 for a draw
+     */
+    public record Result(Outcome outcome, int plies) {}
+
+    private static final Material[] MATERIALS = Material.values();
+    // material signature of each table, with white and with black as the stronger side
+    private static final long[][] SIGNATURES = new long[MATERIALS.length][2];
+
+    static {
+        for (Material material : MATERIALS) {
+            for (ChessGame.TeamColor strong : ChessGame.TeamColor.values()) {
+                ChessBoard board = new ChessBoard();
+                board.addPiece(0, new ChessPiece(strong, ChessPiece.PieceType.KING));
+                board.addPiece(63, new ChessPiece(ChessGame.opposite(strong), ChessPiece.PieceType.KING));
+                for (int i = 0; i < material.pieces.length; i++) {
+                    board.addPiece(8 + i, new ChessPiece(strong, material.pieces[i]));
+                }
+                SIGNATURES[material.ordinal()][strong.ordinal()] = board.getMaterialSignature();
+            }
+        }
+    }
+
+    private final Map<Material, ByteBuffer> tables = new EnumMap<>(Material.class);
+
+    private Tablebase() {}
+
+    /**
+     * Maps every table file found in a directory; missing tables are simply not probed
+     *
+     * @param directory where the generator wrote the tables
+     * @return the tablebase
+     * @throws IOException if a table cannot be read or has the wrong size
+     */
+    public static Tablebase open(Path directory) throws IOException {
+        Tablebase tablebase = new Tablebase();
+        for (Material material : MATERIALS) {
+            Path path = directory.resolve(material.fileName());
+            if (!Files.exists(path)) continue;
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                if (channel.size() != material.size()) {
+                    throw new IOException("Wrong size for " + material + " table: " + path);
+                }
+                tablebase.tables.put(material, channel.map(FileChannel.MapMode.READ_ONLY, 0, material.size()));
+            }
+        }
+        return tablebase;
+    }
+
+    /**
+     * @return True if a table for the material was found
+     */
+    public boolean has(Material material) {
+        return tables.containsKey(material);
+    }
+
+    /**
+     * @param game the position to look up
+     * @return the result with best play for the side to move, or null if no table covers the
+     * position or it cannot occur, such as with the side not to move in check
+     */
+    public Result probe(ChessGame game) {
+        final ChessBoard board = game.getBoard();
+        if (PackedState.castling(game.getState()) != 0) return null;
+        final long signature = board.getMaterialSignature();
+        for (Material material : MATERIALS) {
+            for (ChessGame.TeamColor strong : ChessGame.TeamColor.values()) {
+                if (SIGNATURES[material.ordinal()][strong.ordinal()] != signature) continue;
+                final ByteBuffer table = tables.get(material);
+                if (table == null) return null;
+                final int value = table.get(index(material, board, strong, game.getTeamTurn() == strong)) & 0xFF;
+                if (value == ILLEGAL_VALUE) return null;
+                if (value == 0) return new Result(Outcome.DRAW, 0);
+                return new Result((game.getTeamTurn() == strong) ? Outcome.WIN : Outcome.LOSS, value - 1);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Chooses a move that keeps the best result: the fastest mate when winning, the slowest
+     * when losing, and any move that holds the draw otherwise
+     *
+     * @param game the position; it is not modified
+     * @return the move, or null if no table covers the position or there is no legal move
+     */
+    public ChessMove bestMove(ChessGame game) {
+        if (probe(game) == null) return null;
+        final ChessGame copy = game.copy();
+        final MoveList moves = new MoveList();
+        copy.legalMoves(copy.getTeamTurn(), moves);
+
+        int best = -1;
+        int bestScore = Integer.MIN_VALUE;
+        for (int i = 0; i < moves.size(); i++) {
+            final int move = moves.get(i);
+            copy.doMove(move);
+            final Result reply = probe(copy);
+            copy.undoMove();
+
+            // higher is better: quick wins, then draws, then slow losses
+            int score;
+            if (reply == null || reply.outcome() == Outcome.DRAW) {
+                // a legal reply only leaves the tables by a capture, which leaves no mating material,
+                // or by promoting into a table that was not found, which is scored as unknown
+                score = 0;
+            } else if (reply.outcome() == Outcome.LOSS) {
+                score = 1000 - reply.plies() - 1;
+            } else {
+                score = -1000 + reply.plies() + 1;
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                best = move;
+            }
+        }
+        return (best < 0) ? null : PackedMove.toChessMove(best);
+    }
+
+    /**
+     * @param material    the table
+     * @param board       a board with exactly that material
+     * @param strong      the color holding the extra pieces
+     * @param strongToMove True if the stronger side is to move
+     * @return the position's index in the table
+     */
+    static int index(Material material, ChessBoard board, ChessGame.TeamColor strong, boolean strongToMove) {
+        // tables have white as the stronger side, so black's pieces are seen from the other end
+        final int flip = (strong == ChessGame.TeamColor.WHITE) ? 0 : 56;
+        int index = strongToMove ? 0 : 1;
+        index = (index << 6) | (Long.numberOfTrailingZeros(board.getBitboard(strong, ChessPiece.PieceType.KING)) ^ flip);
+        index = (index << 6) | (Long.numberOfTrailingZeros(
+                board.getBitboard(ChessGame.opposite(strong), ChessPiece.PieceType.KING)) ^ flip);
+        for (ChessPiece.PieceType type : material.pieces) {
+            index = (index << 6) | (Long.numberOfTrailingZeros(board.getBitboard(strong, type)) ^ flip);
+        }
+        return index;
+    }
+}
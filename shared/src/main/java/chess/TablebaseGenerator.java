@@ -0,0 +1,384 @@
+package chess;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Builds the {@link Tablebase} tables by retrograde analysis. Every position is first
+ * checked for legality and, with the lone king to move, given a count of its legal moves;
+ * checkmates are lost in 0. Then, one ply at a time, each newly lost position marks the
+ * positions that reach it with a move of the stronger side as won, and each newly won one
+ * counts down the moves of the positions that reach it with a king move; a position whose
+ * every move reaches a win is lost. Whatever is never reached is a draw. Captures of the
+ * stronger side's pieces leave the table for a drawn ending, so they are simply never
+ * counted down, and pawn promotions are resolved from the KQK and KRK tables, which are
+ * built first.
+ * <p>
+ * Both passes run on the common fork-join pool across all cores; positions are claimed
+ * and counted down with atomic byte updates, so workers share the tables without locks.
+ * <p>
+ * Run from the command line with
+ * {@code java -cp shared/target/classes chess.TablebaseGenerator <directory> [material...]}.
+ */
+public final class TablebaseGenerator {
+
+    private static final VarHandle BYTES = MethodHandles.arrayElementVarHandle(byte[].class);
+    private static final byte ILLEGAL = (byte) Tablebase.ILLEGAL_VALUE;
+    private static final int MAX_PLIES = Tablebase.ILLEGAL_VALUE - 2;
+    private static final int CHUNK = 1 << 14;
+
+    private final Tablebase.Material material;
+    private final ChessPiece.PieceType[] types;
+    private final int pieces;
+    private final int sideBit;
+    private final byte[] values;
+    // legal moves of lone-king-to-move positions not yet known to lose
+    private final byte[] moveCounts;
+    private final Map<Tablebase.Material, byte[]> solved;
+
+    private TablebaseGenerator(Tablebase.Material material, Map<Tablebase.Material, byte[]> solved) {
+        this.material = material;
+        this.pieces = material.pieceCount();
+        this.types = new ChessPiece.PieceType[pieces];
+        types[0] = ChessPiece.PieceType.KING;
+        types[1] = ChessPiece.PieceType.KING;
+        System.arraycopy(material.pieces, 0, types, 2, material.pieces.length);
+        this.sideBit = 1 << (6 * pieces);
+        this.values = new byte[material.size()];
+        this.moveCounts = new byte[material.size()];
+        this.solved = solved;
+    }
+
+    /**
+     * Solves one table
+     *
+     * @param material the ending
+     * @param solved   tables already solved; KPK needs KQK and KRK
+     * @return the table, laid out as {@link Tablebase} reads it
+     */
+    public static byte[] generate(Tablebase.Material material, Map<Tablebase.Material, byte[]> solved) {
+        if (material == Tablebase.Material.KPK
+                && !(solved.containsKey(Tablebase.Material.KQK) && solved.containsKey(Tablebase.Material.KRK))) {
+            throw new IllegalArgumentException("KPK needs the KQK and KRK tables");
+        }
+        return new TablebaseGenerator(material, solved).run();
+    }
+
+    /**
+     * Solves tables and writes them to a directory, building the tables they depend on first
+     *
+     * @param directory where to write the tables
+     * @param materials which tables to write
+     * @throws IOException if a table cannot be written
+     */
+    public static void generate(Path directory, Tablebase.Material... materials) throws IOException {
+        Files.createDirectories(directory);
+        Map<Tablebase.Material, byte[]> solved = new EnumMap<>(Tablebase.Material.class);
+        List<Tablebase.Material> wanted = Arrays.asList(materials);
+        // declaration order puts KQK and KRK before KPK
+        for (Tablebase.Material material : Tablebase.Material.values()) {
+            boolean needed = wanted.contains(material)
+                    || (wanted.contains(Tablebase.Material.KPK)
+                    && (material == Tablebase.Material.KQK || material == Tablebase.Material.KRK));
+            if (!needed) continue;
+            solved.put(material, generate(material, solved));
+            if (wanted.contains(material)) {
+                Files.write(directory.resolve(material.fileName()), solved.get(material));
+            }
+        }
+    }
+
+    // what the initial pass found in one chunk
+    private record Start(IntList mated, IntList promotions, IntList promotionPlies) {}
+
+    private byte[] run() {
+        // initial pass: legality, move counts, checkmates and wins by promotion
+        List<Start> starts = IntStream.range(0, values.length / CHUNK).parallel()
+                .mapToObj(this::initialize)
+                .toList();
+        IntList frontier = new IntList();
+        // wins by promotion, by distance to mate
+        final IntList[] promotions = new IntList[MAX_PLIES + 1];
+        int lastPromotion = -1;
+        for (Start start : starts) {
+            frontier.addAll(start.mated());
+            for (int i = 0; i < start.promotions().size(); i++) {
+                final int plies = start.promotionPlies().get(i);
+                if (promotions[plies] == null) promotions[plies] = new IntList();
+                promotions[plies].add(start.promotions().get(i));
+                lastPromotion = Math.max(lastPromotion, plies);
+            }
+        }
+
+        for (int plies = 0; !frontier.isEmpty() || plies <= lastPromotion; plies++) {
+            if (plies > MAX_PLIES) {
+                throw new IllegalStateException("Mate too long for the table format");
+            }
+            // wins that promote into an already solved table join the search at their distance
+            if (plies <= lastPromotion && promotions[plies] != null) {
+                for (int i = 0; i < promotions[plies].size(); i++) {
+                    final int index = promotions[plies].get(i);
+                    if (BYTES.compareAndSet(values, index, (byte) 0, (byte) (plies + 1))) {
+                        frontier.add(index);
+                    }
+                }
+            }
+
+            final IntList current = frontier;
+            final int chunks = (current.size() + CHUNK - 1) / CHUNK;
+            final int level = plies;
+            List<IntList> found = IntStream.range(0, chunks).parallel()
+                    .mapToObj(chunk -> retreat(current, chunk * CHUNK, Math.min(current.size(), (chunk + 1) * CHUNK), level))
+                    .toList();
+            frontier = new IntList();
+            for (IntList list : found) {
+                frontier.addAll(list);
+            }
+        }
+        return values;
+    }
+
+    private Start initialize(int chunk) {
+        final int[] squares = new int[pieces];
+        final Start start = new Start(new IntList(), new IntList(), new IntList());
+        for (int index = chunk * CHUNK; index < (chunk + 1) * CHUNK; index++) {
+            final boolean strongToMove = (index & sideBit) == 0;
+            decode(index, squares);
+            final long occupied = occupancy(squares);
+            if (!isLegal(squares, occupied, strongToMove)) {
+                values[index] = ILLEGAL;
+                continue;
+            }
+            if (strongToMove) {
+                final int plies = promotionWin(squares, occupied);
+                if (plies > 0) {
+                    start.promotions().add(index);
+                    start.promotionPlies().add(plies);
+                }
+                continue;
+            }
+
+            final int weakKing = squares[1];
+            final long withoutKing = occupied & ~(1L << weakKing);
+            int count = 0;
+            long targets = AttackTables.kingAttacks(weakKing);
+            while (targets != 0) {
+                final int to = Long.numberOfTrailingZeros(targets);
+                targets &= targets - 1;
+                // a captured piece no longer attacks
+                final int captured = slotAt(squares, to);
+                if (!isAttacked(squares, to, withoutKing, captured)) count++;
+            }
+            moveCounts[index] = (byte) count;
+            if (count == 0 && isAttacked(squares, weakKing, occupied, -1)) {
+                values[index] = 1;
+                start.mated().add(index);
+            }
+        }
+        return start;
+    }
+
+    private boolean isLegal(int[] squares, long occupied, boolean strongToMove) {
+        if (Long.bitCount(occupied) != pieces) return false;
+        for (int slot = 2; slot < pieces; slot++) {
+            final int rank = squares[slot] >>> 3;
+            if (types[slot] == ChessPiece.PieceType.PAWN && (rank == 0 || rank == 7)) return false;
+        }
+        if ((AttackTables.kingAttacks(squares[0]) & (1L << squares[1])) != 0) return false;
+        // the side that just moved cannot be in check; the lone king can only give check by touching
+        return !strongToMove || !isAttacked(squares, squares[1], occupied, -1);
+    }
+
+    // the fastest mate reached by promoting, from the solved KQK and KRK tables, or 0 for none
+    private int promotionWin(int[] squares, long occupied) {
+        if (material != Tablebase.Material.KPK) return 0;
+        final int pawn = squares[2];
+        final int to = pawn + 8;
+        if ((pawn >>> 3) != 6 || (occupied & (1L << to)) != 0) return 0;
+
+        int best = 0;
+        for (Tablebase.Material promoted : new Tablebase.Material[]{Tablebase.Material.KQK, Tablebase.Material.KRK}) {
+            final int child = (1 << 18) | (squares[0] << 12) | (squares[1] << 6) | to;
+            final int value = solved.get(promoted)[child] & 0xFF;
+            if (value == 0 || value == Tablebase.ILLEGAL_VALUE) continue;
+            // the lone king loses in value - 1 plies after the promotion
+            if (best == 0 || value < best) best = value;
+        }
+        return best;
+    }
+
+    // newly solved positions at the given distance from mate: mark or count down their predecessors
+    private IntList retreat(IntList frontier, int from, int to, int plies) {
+        final int[] squares = new int[pieces];
+        final IntList found = new IntList();
+        final byte next = (byte) (plies + 2);
+        for (int i = from; i < to; i++) {
+            final int index = frontier.get(i);
+            decode(index, squares);
+            final long occupied = occupancy(squares);
+
+            if ((index & sideBit) != 0) {
+                // lost for the lone king: every stronger-side move into it wins
+                for (int slot = 0; slot < pieces; slot++) {
+                    if (slot == 1) continue;
+                    final int square = squares[slot];
+                    long origins = retractions(slot, square, occupied);
+                    while (origins != 0) {
+                        final int origin = Long.numberOfTrailingZeros(origins);
+                        origins &= origins - 1;
+                        squares[slot] = origin;
+                        final int predecessor = encode(squares, true);
+                        if (BYTES.compareAndSet(values, predecessor, (byte) 0, next)) found.add(predecessor);
+                    }
+                    squares[slot] = square;
+                }
+            } else {
+                // won for the stronger side: one fewer escape for every lone-king move into it
+                final int square = squares[1];
+                long origins = AttackTables.kingAttacks(square) & ~occupied;
+                while (origins != 0) {
+                    final int origin = Long.numberOfTrailingZeros(origins);
+                    origins &= origins - 1;
+                    squares[1] = origin;
+                    final int predecessor = encode(squares, false);
+                    if (values[predecessor] == 0 && countDown(predecessor)) {
+                        values[predecessor] = next;
+                        found.add(predecessor);
+                    }
+                }
+                squares[1] = square;
+            }
+        }
+        return found;
+    }
+
+    // True if this took the last escape; a compare-and-set loop, since getAndAdd on byte
+    // array elements gave wrong counts once JIT-compiled on JDK 21
+    private boolean countDown(int index) {
+        byte count;
+        do {
+            count = (byte) BYTES.getVolatile(moveCounts, index);
+        } while (!BYTES.compareAndSet(moveCounts, index, count, (byte) (count - 1)));
+        return count == 1;
+    }
+
+    // squares a stronger-side piece now on the square could have come from without capturing
+    private long retractions(int slot, int square, long occupied) {
+        final long empty = ~occupied;
+        return switch (types[slot]) {
+            case KING -> AttackTables.kingAttacks(square) & empty;
+            case KNIGHT -> AttackTables.knightAttacks(square) & empty;
+            case BISHOP -> SlidingAttacks.bishopAttacks(square, occupied) & empty;
+            case ROOK -> SlidingAttacks.rookAttacks(square, occupied) & empty;
+            case QUEEN -> SlidingAttacks.queenAttacks(square, occupied) & empty;
+            case PAWN -> {
+                long origins = 0;
+                final int single = square - 8;
+                if (single >= 8 && (occupied & (1L << single)) == 0) {
+                    origins |= 1L << single;
+                    // a double step from the second rank passes over the now empty third
+                    if ((square >>> 3) == 3 && (occupied & (1L << (square - 16))) == 0) {
+                        origins |= 1L << (square - 16);
+                    }
+                }
+                yield origins;
+            }
+        };
+    }
+
+    // True if a stronger-side piece other than the one in the skipped slot attacks the square
+    private boolean isAttacked(int[] squares, int square, long occupied, int skipped) {
+        for (int slot = 0; slot < pieces; slot++) {
+            if (slot == 1 || slot == skipped) continue;
+            final long attacks = switch (types[slot]) {
+                case KING -> AttackTables.kingAttacks(squares[slot]);
+                case KNIGHT -> AttackTables.knightAttacks(squares[slot]);
+                case BISHOP -> SlidingAttacks.bishopAttacks(squares[slot], occupied);
+                case ROOK -> SlidingAttacks.rookAttacks(squares[slot], occupied);
+                case QUEEN -> SlidingAttacks.queenAttacks(squares[slot], occupied);
+                case PAWN -> AttackTables.pawnAttacks(ChessGame.TeamColor.WHITE, squares[slot]);
+            };
+            if ((attacks & (1L << square)) != 0) return true;
+        }
+        return false;
+    }
+
+    private int slotAt(int[] squares, int square) {
+        for (int slot = 2; slot < pieces; slot++) {
+            if (squares[slot] == square) return slot;
+        }
+        return -1;
+    }
+
+    private long occupancy(int[] squares) {
+        long occupied = 0;
+        for (int square : squares) {
+            occupied |= 1L << square;
+        }
+        return occupied;
+    }
+
+    private void decode(int index, int[] squares) {
+        for (int slot = pieces - 1; slot >= 0; slot--) {
+            squares[slot] = index & 63;
+            index >>>= 6;
+        }
+    }
+
+    private int encode(int[] squares, boolean strongToMove) {
+        int index = strongToMove ? 0 : 1;
+        for (int square : squares) {
+            index = (index << 6) | square;
+        }
+        return index;
+    }
+
+    // growable int array for the per-worker lists of solved positions
+    private static final class IntList {
+        private int[] items = new int[64];
+        private int size;
+
+        void add(int value) {
+            if (size == items.length) items = Arrays.copyOf(items, size * 2);
+            items[size++] = value;
+        }
+
+        void addAll(IntList other) {
+            if (size + other.size > items.length) items = Arrays.copyOf(items, Math.max(size + other.size, size * 2));
+            System.arraycopy(other.items, 0, items, size, other.size);
+            size += other.size;
+        }
+
+        int get(int index) {
+            return items[index];
+        }
+
+        int size() {
+            return size;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: TablebaseGenerator <directory> [KQK|KRK|KPK|KBNK...]");
+            return;
+        }
+        Tablebase.Material[] materials = (args.length == 1) ? Tablebase.Material.values()
+                : Arrays.stream(args, 1, args.length).map(Tablebase.Material::valueOf).toArray(Tablebase.Material[]::new);
+        long start = System.nanoTime();
+        generate(Path.of(args[0]), materials);
+        System.out.printf("Wrote %s in %d ms%n", Arrays.toString(materials), (System.nanoTime() - start) / 1_000_000);
+    }
+}
@@ -0,0 +1,237 @@
+package chess;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-size hash table of search results, keyed by {@link ChessGame#getZobristKey()} and
+ * shared by every thread of a {@link SearchEngine} without locks.
+ * <p>
+ * Each entry is two longs in one flat array: the key XORed with the data, then the data.
+ * Writers store both words with plain writes, so a racing reader may see one word from
+ * each of two stores; the XOR then no longer gives back the probed key and the torn entry
+ * reads as a miss. The data word packs the {@link PackedMove} in bits 0-15, the score as a
+ * signed short in bits 16-31, the depth in bits 32-39, the bound in bits 40-41 and the
+ * search generation in bits 42-49.
+ * <p>
+ * Entries are grouped in buckets of {@value #WAYS}. A store replaces the entry already
+ * holding its key, otherwise the one from the oldest search, shallowest first.
+ * <p>
+ * Probe statistics cost a shared write per probe on every search thread, so they are only
+ * kept when asked for, by the constructor or the {@code chess.search.tableStats} system property.
+ */
+public final class TranspositionTable {
+
+    /** The score is an upper bound: every move failed low */
+    public static final int UPPER = 1;
+    /** The score is a lower bound: a move failed high */
+    public static final int LOWER = 2;
+    /** The score is exact */
+    public static final int EXACT = 3;
+
+    private static final int WAYS = 2;
+    private static final int ENTRY_BYTES = 2 * Long.BYTES;
+    private static final int GENERATION_MASK = 0xFF;
+
+    // data is never 0 because every stored bound is non-zero, so 0 doubles as "no entry"
+    private static final long NONE = 0;
+
+    private final long[] table;
+    private final int bucketMask;
+    private volatile int generation;
+
+    private final boolean statistics;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder bucketMisses = new LongAdder();
+
+    /**
+     * @param megabytes memory to use, at least 1; rounded down to a power of two buckets
+     */
+    public TranspositionTable(int megabytes) {
+        this(megabytes, Boolean.getBoolean("chess.search.tableStats"));
+    }
+
+    /**
+     * @param megabytes  memory to use, at least 1; rounded down to a power of two buckets
+     * @param statistics True to count hits and misses, which every probe then writes to
+     */
+    public TranspositionTable(int megabytes, boolean statistics) {
+        if (megabytes < 1) {
+            throw new IllegalArgumentException("Need at least one megabyte");
+        }
+        long entries = ((long) megabytes << 20) / ENTRY_BYTES;
+        int buckets = (int) Long.highestOneBit(Math.min(entries / WAYS, Integer.MAX_VALUE / (2 * WAYS)));
+        this.bucketMask = buckets - 1;
+        this.table = new long[buckets * WAYS * 2];
+        this.statistics = statistics;
+    }
+
+    /**
+     * @param key the position key
+     * @return the packed entry for the position, or 0 if it is not in the table; read it
+     * with {@link #move(long)}, {@link #score(long)}, {@link #depth(long)} and {@link #bound(long)}
+     */
+    public long probe(long key) {
+        final int first = slot(key);
+        boolean occupied = false;
+        for (int i = first; i < first + 2 * WAYS; i += 2) {
+            final long data = table[i + 1];
+            if ((table[i] ^ data) == key && data != NONE) {
+                if (statistics) hits.increment();
+                return data;
+            }
+            occupied |= data != NONE;
+        }
+        if (statistics) {
+            misses.increment();
+            if (occupied) bucketMisses.increment();
+        }
+        return NONE;
+    }
+
+    /**
+     * Records a search result, replacing the weakest entry of the key's bucket
+     *
+     * @param key   the position key
+     * @param move  the best move found as a {@link PackedMove}, or 0 if none; an existing
+     *              move for the same position is kept when none is given
+     * @param score the score, which must fit in a short
+     * @param depth the remaining depth it was searched to, 0..255
+     * @param bound {@link #UPPER}, {@link #LOWER} or {@link #EXACT}
+     */
+    public void store(long key, int move, int score, int depth, int bound) {
+        final int first = slot(key);
+        final int current = generation;
+        int victim = first;
+        int victimWorth = Integer.MAX_VALUE;
+        for (int i = first; i < first + 2 * WAYS; i += 2) {
+            final long data = table[i + 1];
+            if (data == NONE) {
+                victim = i;
+                break;
+            }
+            if ((table[i] ^ data) == key) {
+                if (move == 0) move = move(data);
+                victim = i;
+                break;
+            }
+            // entries from earlier searches count as much shallower
+            final int age = (current - generation(data)) & GENERATION_MASK;
+            final int worth = depth(data) - 8 * age;
+            if (worth < victimWorth) {
+                victim = i;
+                victimWorth = worth;
+            }
+        }
+        final long data = (move & 0xFFFFL)
+                | ((long) (score & 0xFFFF) << 16)
+                | ((long) (depth & 0xFF) << 32)
+                | ((long) bound << 40)
+                | ((long) current << 42);
+        table[victim] = key ^ data;
+        table[victim + 1] = data;
+    }
+
+    private int slot(long key) {
+        // every bit of a Zobrist key is uniformly random
+        return ((int) (key >>> 32) & bucketMask) * WAYS * 2;
+    }
+
+    public static int move(long entry) {
+        return (int) (entry & 0xFFFF);
+    }
+
+    public static int score(long entry) {
+        return (short) (entry >>> 16);
+    }
+
+    public static int depth(long entry) {
+        return (int) (entry >>> 32) & 0xFF;
+    }
+
+    public static int bound(long entry) {
+        return (int) (entry >>> 40) & 0x3;
+    }
+
+    private static int generation(long entry) {
+        return (int) (entry >>> 42) & GENERATION_MASK;
+    }
+
+    /**
+     * Marks the start of a new search, so entries from earlier ones are replaced first
+     */
+    public void newSearch() {
+        generation = (generation + 1) & GENERATION_MASK;
+    }
+
+    /**
+     * Empties the table and resets the statistics; not safe while a search is running
+     */
+    public void clear() {
+        Arrays.fill(table, 0L);
+        hits.reset();
+        misses.reset();
+        bucketMisses.reset();
+    }
+
+    public boolean keepsStatistics() {
+        return statistics;
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return misses whose bucket was full or partly filled by other positions; a measure of
+     * bucket pressure, not of Zobrist key collisions, which read as hits
+     */
+    public long bucketMisses() {
+        return bucketMisses.sum();
+    }
+
+    /**
+     * @return fraction of probes that found their position, or 0 before the first probe or
+     * without statistics
+     */
+    public double hitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return (total == 0) ? 0.0 : (double) h / total;
+    }
+
+    /**
+     * @return number of entries, i.e. the most positions the table can hold
+     */
+    public int capacity() {
+        return table.length / 2;
+    }
+
+    /**
+     * @return permille of a sample of entries written during the current search
+     */
+    public int usage() {
+        final int sample = Math.min(1000, capacity());
+        final int current = generation;
+        int used = 0;
+        for (int i = 0; i < sample; i++) {
+            long data = table[2 * i + 1];
+            if (data != NONE && generation(data) == current) used++;
+        }
+        return used * 1000 / sample;
+    }
+
+    @Override
+    public String toString() {
+        if (!statistics) {
+            return String.format("TranspositionTable[capacity=%d, usage=%d/1000]", capacity(), usage());
+        }
+        return String.format("TranspositionTable[capacity=%d, hits=%d, misses=%d, bucketMisses=%d, hitRate=%.3f]",
+                capacity(), hits(), misses(), bucketMisses(), hitRate());
+    }
+}
@@ -0,0 +1,74 @@
+package chess;
+
+import java.util.SplittableRandom;
+
+/**
+ * Random 64-bit keys for Zobrist position hashing. A position's key is the XOR of the
+ * key for every (piece, square) pair on the board, the side-to-move key when black
+ * is to move, the key for the castling rights and the en passant file key when a
+ * capture en passant is available, so a move updates it with a handful of XORs
+ * instead of a full rescan.
+ * The keys come from a fixed seed, so they are identical in every JVM.
+ */
+public final class Zobrist {
+    private Zobrist() {}
+
+    private static final long[][] PIECE_SQUARE = new long[12][64];
+    // indexed by the PackedState castling bits; each entry is the XOR of its rights' keys
+    private static final long[] CASTLING = new long[16];
+    private static final long[] EN_PASSANT_FILE = new long[8];
+
+    /**
+     * XORed into a position key when black is to move
+     */
+    public static final long BLACK_TO_MOVE;
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x9E3779B97F4A7C15L);
+        for (long[] keys : PIECE_SQUARE) {
+            for (int square = 0; square < 64; square++) {
+                keys[square] = random.nextLong();
+            }
+        }
+        BLACK_TO_MOVE = random.nextLong();
+
+        long[] rightKeys = new long[4];
+        for (int i = 0; i < rightKeys.length; i++) {
+            rightKeys[i] = random.nextLong();
+        }
+        for (int rights = 0; rights < CASTLING.length; rights++) {
+            for (int i = 0; i < rightKeys.length; i++) {
+                if ((rights & (1 << i)) != 0) CASTLING[rights] ^= rightKeys[i];
+            }
+        }
+        for (int file = 0; file < EN_PASSANT_FILE.length; file++) {
+            EN_PASSANT_FILE[file] = random.nextLong();
+        }
+    }
+
+    /**
+     * @param color  the piece's team
+     * @param type   the piece's type
+     * @param square the 0..63 square index
+     * @return the key for that piece standing on that square
+     */
+    public static long pieceKey(ChessGame.TeamColor color, ChessPiece.PieceType type, int square) {
+        return PIECE_SQUARE[ChessBoard.bitboardIndex(color, type)][square];
+    }
+
+    /**
+     * @param castling castling rights as in {@link PackedState#castling(int)}
+     * @return the key for that set of rights, 0 for none
+     */
+    public static long castlingKey(int castling) {
+        return CASTLING[castling];
+    }
+
+    /**
+     * @param square the en passant target square, or 0 for none
+     * @return the key for the target's file, 0 for none
+     */
+    public static long enPassantKey(int square) {
+        return (square == 0) ? 0L : EN_PASSANT_FILE[square & 7];
+    }
+}
@@ -0,0 +1,140 @@
+package serialization;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessPiece;
+import chess.PackedState;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Compact binary form of a game, for storage and caches where the JSON of
+ * {@link GameStateDTO} is too large and too slow to build.
+ * <p>
+ * Layout, big-endian:
+ * <ul>
+ *     <li>1 byte format version ({@value #VERSION})</li>
+ *     <li>32 bytes board: one 4-bit code per square, a1 first, low nibble first;
+ *     0 for empty, otherwise {@code color * 6 + type + 1} by ordinal</li>
+ *     <li>1 byte side to move (0 white, 1 black)</li>
+ *     <li>4 bytes state word, see {@link chess.PackedState}</li>
+ *     <li>1 byte n, then n longs: the position history for repetition detection</li>
+ * </ul>
+ * A game without history takes {@value #BASE_BYTES} bytes. The history dominates the size:
+ * it holds up to {@link ChessGame#HISTORY_CAPACITY} keys, so a game takes at most
+ * {@link #MAX_BYTES} bytes, of which all but the first {@value #BASE_BYTES} are history.
+ * <p>
+ * Decoding checks the state word against the board like FEN import does, so a corrupt or
+ * stale record is rejected rather than restored with an impossible en passant square or
+ * castling right.
+ */
+public final class GameStateCodec {
+    private GameStateCodec() {}
+
+    public static final byte VERSION = 1;
+    public static final int BASE_BYTES = 1 + 32 + 1 + 4 + 1;
+    public static final int MAX_BYTES = BASE_BYTES + ChessGame.HISTORY_CAPACITY * Long.BYTES;
+
+    private static final ChessPiece.PieceType[] TYPES = ChessPiece.PieceType.values();
+    private static final int CODES_PER_COLOR = TYPES.length;
+
+    /**
+     * @return the number of bytes {@link #encode} writes for the game
+     */
+    public static int encodedSize(ChessGame game) {
+        return BASE_BYTES + game.getPositionHistory().length * Long.BYTES;
+    }
+
+    /**
+     * Writes a game at the buffer's position, advancing it
+     *
+     * @param game   the game to write
+     * @param buffer the buffer to write to, with at least {@link #encodedSize} bytes remaining
+     */
+    public static void encode(ChessGame game, ByteBuffer buffer) {
+        final ChessBoard board = game.getBoard();
+        buffer.put(VERSION);
+        for (int square = 0; square < 64; square += 2) {
+            buffer.put((byte) (code(board.getPiece(square)) | (code(board.getPiece(square + 1)) << 4)));
+        }
+        buffer.put((byte) game.getTeamTurn().ordinal());
+        buffer.putInt(game.getState());
+
+        final long[] history = game.getPositionHistory();
+        buffer.put((byte) history.length);
+        for (long key : history) {
+            buffer.putLong(key);
+        }
+    }
+
+    /**
+     * Reads a game at the buffer's position, advancing it
+     *
+     * @param buffer the buffer to read from
+     * @return the decoded game
+     * @throws IllegalArgumentException if the bytes are not a game in this format
+     */
+    public static ChessGame decode(ByteBuffer buffer) {
+        try {
+            final byte version = buffer.get();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported game state version: " + version);
+            }
+            final ChessBoard board = new ChessBoard();
+            for (int square = 0; square < 64; square += 2) {
+                final int pair = buffer.get() & 0xFF;
+                addPiece(board, square, pair & 0xF);
+                addPiece(board, square + 1, pair >>> 4);
+            }
+            final int turn = buffer.get();
+            if (turn != 0 && turn != 1) {
+                throw new IllegalArgumentException("Bad side to move: " + turn);
+            }
+            final ChessGame.TeamColor sideToMove = ChessGame.TeamColor.values()[turn];
+            final int state = buffer.getInt();
+            PackedState.validate(state, board, sideToMove);
+
+            final int count = buffer.get() & 0xFF;
+            if (count > ChessGame.HISTORY_CAPACITY) {
+                throw new IllegalArgumentException("History of " + count + " positions");
+            }
+            final long[] history = new long[count];
+            for (int i = 0; i < history.length; i++) {
+                history[i] = buffer.getLong();
+            }
+
+            ChessGame game = new ChessGame(board);
+            game.setTeamTurn(sideToMove);
+            game.setState(state);
+            game.setPositionHistory(history);
+            return game;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated game state", e);
+        }
+    }
+
+    public static byte[] toBytes(ChessGame game) {
+        ByteBuffer buffer = ByteBuffer.allocate(encodedSize(game));
+        encode(game, buffer);
+        return buffer.array();
+    }
+
+    public static ChessGame fromBytes(byte[] bytes) {
+        return decode(ByteBuffer.wrap(bytes));
+    }
+
+    private static int code(ChessPiece piece) {
+        if (piece == null) return 0;
+        return piece.getTeamColor().ordinal() * CODES_PER_COLOR + piece.getPieceType().ordinal() + 1;
+    }
+
+    private static void addPiece(ChessBoard board, int square, int code) {
+        if (code == 0) return;
+        if (code > 2 * CODES_PER_COLOR) {
+            throw new IllegalArgumentException("Bad piece code " + code + " on square " + square);
+        }
+        ChessGame.TeamColor color = ChessGame.TeamColor.values()[(code - 1) / CODES_PER_COLOR];
+        board.addPiece(square, new ChessPiece(color, TYPES[(code - 1) % CODES_PER_COLOR]));
+    }
+}
@@ -4,5 +4,11 @@ import chess.ChessGame;
 
 import java.util.List;
 
-public record GameStateDTO(ChessGame.TeamColor turn, List<GamePieceDTO> gamePieces) {
+/**
+ * @param state castling rights, en passant target and clocks packed with {@link chess.PackedState};
+ *              0 in games saved before it was stored, in which case they are inferred from the board
+ * @param history keys of the positions since the last capture or pawn move, for repetition
+ *                detection; null in games saved before it was stored
+ */
+public record GameStateDTO(ChessGame.TeamColor turn, List<GamePieceDTO> gamePieces, int state, long[] history) {
 }
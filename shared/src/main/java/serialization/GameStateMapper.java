@@ -16,14 +16,13 @@ public class GameStateMapper {
 
         for (int r = 1; r <= 8; r++) {
             for (int c = 1; c <= 8; c++) {
-                ChessPosition position = new ChessPosition(r, c);
-                ChessPiece piece = board.getPiece(position);
+                ChessPiece piece = board.getPiece(ChessBoard.squareIndex(r, c));
                 if (piece != null) {
                     pieces.add(new GamePieceDTO(piece.getPieceType(), piece.getTeamColor(), r, c));
                 }
             }
         }
-        return new GameStateDTO(game.getTeamTurn(), pieces);
+        return new GameStateDTO(game.getTeamTurn(), pieces, game.getState(), game.getPositionHistory());
     }
 
     public static ChessGame dtoToGame(GameStateDTO gameStateDTO) {
@@ -31,7 +30,7 @@ public class GameStateMapper {
         ChessBoard board = new ChessBoard();
 
         for (var pieceDTO : gameStateDTO.gamePieces()) {
-            var pos = new ChessPosition(pieceDTO.row(), pieceDTO.col());
+            var pos = ChessPosition.of(pieceDTO.row(), pieceDTO.col());
             var piece = new ChessPiece(pieceDTO.color(), pieceDTO.type(), pos);
             board.addPiece(pos, piece);
             if (piece.getPieceType() == ChessPiece.PieceType.KING) {
@@ -42,6 +41,12 @@ public class GameStateMapper {
         }
         game.setBoard(board);
         game.setTeamTurn(gameStateDTO.turn());
+        if (gameStateDTO.state() != 0) {
+            game.setState(gameStateDTO.state());
+        }
+        if (gameStateDTO.history() != null) {
+            game.setPositionHistory(gameStateDTO.history());
+        }
         return game;
     }
 
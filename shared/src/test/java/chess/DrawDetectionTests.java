@@ -0,0 +1,123 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import serialization.GameStateMapper;
+
+public class DrawDetectionTests {
+
+    private static final ChessMove[] KNIGHT_SHUFFLE = {
+            new ChessMove(ChessPosition.of(1, 7), ChessPosition.of(3, 6), null),
+            new ChessMove(ChessPosition.of(8, 7), ChessPosition.of(6, 6), null),
+            new ChessMove(ChessPosition.of(3, 6), ChessPosition.of(1, 7), null),
+            new ChessMove(ChessPosition.of(6, 6), ChessPosition.of(8, 7), null),
+    };
+
+    @Test
+    @DisplayName("Third occurrence of a position is a draw")
+    public void threefoldRepetition() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        for (int round = 0; round < 2; round++) {
+            for (ChessMove move : KNIGHT_SHUFFLE) {
+                Assertions.assertFalse(game.getGameStatus().isDraw());
+                game.makeMove(move);
+            }
+        }
+        Assertions.assertEquals(2, game.repetitions());
+        Assertions.assertEquals(ChessGame.GameStatus.THREEFOLD_REPETITION, game.getGameStatus());
+    }
+
+    @Test
+    @DisplayName("Undoing moves keeps the whole history once the ring has wrapped")
+    public void undoAfterWrap() {
+        ChessGame game = new ChessGame();
+        for (int ply = 0; ply < ChessGame.HISTORY_CAPACITY + 2; ply++) {
+            game.doMove(KNIGHT_SHUFFLE[ply % 4]);
+        }
+        long[] history = game.getPositionHistory();
+        int repetitions = game.repetitions();
+        Assertions.assertEquals(ChessGame.HISTORY_CAPACITY, history.length);
+
+        for (int ply = 0; ply < 3; ply++) {
+            game.doMove(KNIGHT_SHUFFLE[(ChessGame.HISTORY_CAPACITY + 2 + ply) % 4]);
+        }
+        for (int ply = 0; ply < 3; ply++) {
+            game.undoMove();
+        }
+        Assertions.assertArrayEquals(history, game.getPositionHistory());
+        Assertions.assertEquals(repetitions, game.repetitions());
+    }
+
+    @Test
+    @DisplayName("A pawn move resets the repetition history")
+    public void pawnMoveResetsRepetitions() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        for (ChessMove move : KNIGHT_SHUFFLE) {
+            game.makeMove(move);
+        }
+        Assertions.assertEquals(1, game.repetitions());
+        game.makeMove(new ChessMove(ChessPosition.of(2, 5), ChessPosition.of(4, 5), null));
+        Assertions.assertEquals(0, game.repetitions());
+        Assertions.assertEquals(0, game.getPositionHistory().length);
+    }
+
+    @Test
+    @DisplayName("One hundred plies without a capture or pawn move is a draw")
+    public void fiftyMoveRule() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        int state = game.getState();
+        game.setState(PackedState.encode(PackedState.castling(state), 0, 99, 50));
+        Assertions.assertEquals(ChessGame.GameStatus.NORMAL, game.getGameStatus());
+
+        game.makeMove(KNIGHT_SHUFFLE[0]);
+        Assertions.assertEquals(ChessGame.GameStatus.FIFTY_MOVE_RULE, game.getGameStatus());
+    }
+
+    @Test
+    @DisplayName("Repetitions survive a save and reload")
+    public void historySurvivesSerialization() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        for (int ply = 0; ply < 2 * KNIGHT_SHUFFLE.length; ply++) {
+            game = GameStateMapper.dtoToGame(GameStateMapper.gameToDTO(game));
+            game.makeMove(KNIGHT_SHUFFLE[ply % KNIGHT_SHUFFLE.length]);
+        }
+        Assertions.assertEquals(ChessGame.GameStatus.THREEFOLD_REPETITION, game.getGameStatus());
+    }
+
+    @Test
+    @DisplayName("Dead positions are drawn by insufficient material")
+    public void insufficientMaterial() {
+        Assertions.assertTrue(gameWith("4k3/8/8/8/8/8/8/4K3").isInsufficientMaterial());
+        Assertions.assertTrue(gameWith("4k3/8/8/8/8/8/8/2B1K3").isInsufficientMaterial());
+        Assertions.assertTrue(gameWith("4k3/8/8/8/8/8/8/1N2K3").isInsufficientMaterial());
+        Assertions.assertTrue(gameWith("2b1k3/8/8/8/8/8/8/3BK3").isInsufficientMaterial());
+        Assertions.assertEquals(ChessGame.GameStatus.INSUFFICIENT_MATERIAL,
+                gameWith("4k3/8/8/8/8/8/8/2B1K3").getGameStatus());
+
+        Assertions.assertFalse(gameWith("1b2k3/8/8/8/8/8/8/3BK3").isInsufficientMaterial());
+        Assertions.assertFalse(gameWith("4k3/8/8/8/8/8/8/1NN1K3").isInsufficientMaterial());
+        Assertions.assertFalse(gameWith("4k3/8/8/8/8/8/4P3/4K3").isInsufficientMaterial());
+        Assertions.assertFalse(new ChessGame().isInsufficientMaterial());
+    }
+
+    @Test
+    @DisplayName("Material signature follows captures and promotions")
+    public void materialSignatureIsIncremental() {
+        ChessGame game = gameWith("3rk3/2P5/8/8/8/8/8/4K3");
+        ChessBoard board = game.getBoard();
+        long before = board.getMaterialSignature();
+
+        game.doMove(PackedMove.encode(ChessBoard.squareIndex(7, 3), ChessBoard.squareIndex(8, 4), ChessPiece.PieceType.QUEEN));
+        Assertions.assertEquals(0, board.getMaterialCount(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN));
+        Assertions.assertEquals(1, board.getMaterialCount(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.QUEEN));
+        Assertions.assertEquals(0, board.getMaterialCount(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.ROOK));
+
+        game.undoMove();
+        Assertions.assertEquals(before, board.getMaterialSignature());
+    }
+
+    private static ChessGame gameWith(String placement) {
+        return ChessGame.fromFen(placement + " w - - 0 1");
+    }
+}
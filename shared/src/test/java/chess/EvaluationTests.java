@@ -0,0 +1,101 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+public class EvaluationTests {
+
+    @Test
+    @DisplayName("The start position is level and in the full middlegame")
+    public void startPosition() {
+        ChessGame game = new ChessGame();
+        Assertions.assertEquals(0, Evaluation.evaluate(game));
+        Assertions.assertEquals(PieceSquareTables.MAX_PHASE, game.getBoard().getGamePhase());
+    }
+
+    @Test
+    @DisplayName("Mirrored positions score the same for the side to move")
+    public void colorSymmetry() {
+        for (Perft.Position position : Perft.STANDARD_POSITIONS) {
+            ChessGame game = position.toGame();
+            ChessGame mirrored = ChessGame.fromFen(mirror(position.fen()));
+            Assertions.assertEquals(Evaluation.evaluate(game), Evaluation.evaluate(mirrored), position.name());
+        }
+    }
+
+    @Test
+    @DisplayName("Incremental terms match a full rescan through moves, undos and copies")
+    public void incrementalMatchesRescan() {
+        SplittableRandom random = new SplittableRandom(7);
+        MoveList moves = new MoveList();
+        for (Perft.Position position : Perft.STANDARD_POSITIONS) {
+            ChessGame game = position.toGame();
+            for (int ply = 0; ply < 200; ply++) {
+                moves.clear();
+                game.legalMoves(game.getTeamTurn(), moves);
+                if (moves.isEmpty()) break;
+                game.doMove(moves.get(random.nextInt(moves.size())));
+                assertMatchesRescan(game.getBoard(), position.name());
+                if (random.nextInt(4) == 0) {
+                    game.undoMove();
+                    assertMatchesRescan(game.getBoard(), position.name());
+                }
+            }
+            assertMatchesRescan(new ChessBoard(game.getBoard()), position.name());
+        }
+    }
+
+    @Test
+    @DisplayName("Endgame terms take over as pieces come off")
+    public void tapering() {
+        // the same king and pawn placement scores differently with and without queens
+        ChessGame endgame = ChessGame.fromFen("4k3/8/8/8/8/8/4P3/4K3 w - - 0 1");
+        ChessGame middlegame = ChessGame.fromFen("3qk3/8/8/8/8/8/4P3/3QK3 w - - 0 1");
+        ChessBoard board = endgame.getBoard();
+        Assertions.assertEquals(0, board.getGamePhase());
+        Assertions.assertEquals(board.getEndgameScore(), Evaluation.evaluate(endgame));
+        Assertions.assertEquals(8, middlegame.getBoard().getGamePhase());
+        Assertions.assertTrue(Evaluation.evaluate(endgame) > 0);
+    }
+
+    private static void assertMatchesRescan(ChessBoard board, String message) {
+        int middlegame = 0;
+        int endgame = 0;
+        int phase = 0;
+        for (int square = 0; square < 64; square++) {
+            ChessPiece piece = board.getPiece(square);
+            if (piece == null) continue;
+            middlegame += PieceSquareTables.middlegame(piece.getTeamColor(), piece.getPieceType(), square);
+            endgame += PieceSquareTables.endgame(piece.getTeamColor(), piece.getPieceType(), square);
+            phase += PieceSquareTables.phaseWeight(piece.getPieceType());
+        }
+        Assertions.assertEquals(middlegame, board.getMiddlegameScore(), message);
+        Assertions.assertEquals(endgame, board.getEndgameScore(), message);
+        Assertions.assertEquals(phase, board.getGamePhase(), message);
+    }
+
+    // swaps the colors: ranks reversed, case swapped, other side to move, no en passant
+    private static String mirror(String fen) {
+        String[] fields = fen.split(" ");
+        String[] ranks = fields[0].split("/");
+        StringBuilder placement = new StringBuilder();
+        for (int i = ranks.length - 1; i >= 0; i--) {
+            placement.append(swapCase(ranks[i]));
+            if (i > 0) placement.append('/');
+        }
+        String turn = fields[1].equals("w") ? "b" : "w";
+        String castling = fields[2].equals("-") ? "-" : swapCase(fields[2]);
+        return placement + " " + turn + " " + castling + " - " + fields[4] + " " + fields[5];
+    }
+
+    private static String swapCase(String text) {
+        StringBuilder swapped = new StringBuilder(text.length());
+        for (char c : text.toCharArray()) {
+            swapped.append(Character.isUpperCase(c) ? Character.toLowerCase(c) : Character.toUpperCase(c));
+        }
+        return swapped.toString();
+    }
+}
@@ -0,0 +1,100 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import serialization.GameStateCodec;
+
+public class FenTests {
+
+    private static final String START = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    @Test
+    @DisplayName("Starting position round trips")
+    public void startingPosition() {
+        Assertions.assertEquals(START, new ChessGame().toFen());
+        Assertions.assertEquals(new ChessGame(), ChessGame.fromFen(START));
+        Assertions.assertEquals(new ChessGame().getZobristKey(), ChessGame.fromFen(START).getZobristKey());
+    }
+
+    @Test
+    @DisplayName("Standard positions round trip")
+    public void standardPositionsRoundTrip() {
+        for (Perft.Position position : Perft.STANDARD_POSITIONS) {
+            Assertions.assertEquals(position.fen(), position.toGame().toFen(), position.name());
+        }
+    }
+
+    @Test
+    @DisplayName("Parsed position matches the same position reached by moves")
+    public void matchesPlayedPosition() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        game.makeMove(new ChessMove(ChessPosition.of(2, 5), ChessPosition.of(4, 5), null));
+        game.makeMove(new ChessMove(ChessPosition.of(7, 1), ChessPosition.of(6, 1), null));
+        game.makeMove(new ChessMove(ChessPosition.of(4, 5), ChessPosition.of(5, 5), null));
+        game.makeMove(new ChessMove(ChessPosition.of(7, 4), ChessPosition.of(5, 4), null));
+
+        String fen = "rnbqkbnr/1pp1pppp/p7/3pP3/8/8/PPPP1PPP/RNBQKBNR w KQkq d6 0 3";
+        Assertions.assertEquals(fen, game.toFen());
+        ChessGame parsed = ChessGame.fromFen(fen);
+        Assertions.assertEquals(game.getZobristKey(), parsed.getZobristKey());
+        Assertions.assertEquals(game.getState(), parsed.getState());
+        Assertions.assertTrue(parsed.validMoves(ChessPosition.of(5, 5))
+                .contains(new ChessMove(ChessPosition.of(5, 5), ChessPosition.of(6, 4), null)));
+    }
+
+    @Test
+    @DisplayName("Unusable en passant targets and castling rights are dropped")
+    public void normalizesState() {
+        ChessGame game = ChessGame.fromFen("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBN1 b KQkq e3 0 1");
+        Assertions.assertEquals("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBN1 b Qkq - 0 1", game.toFen());
+
+        // d5 could take on e6, but no black pawn stands on e5 to have pushed past it
+        game = ChessGame.fromFen("4k3/8/8/3P4/8/8/8/4K3 w - e6 0 1");
+        Assertions.assertEquals("4k3/8/8/3P4/8/8/8/4K3 w - - 0 1", game.toFen());
+        Assertions.assertEquals(game.toFen(), GameStateCodec.fromBytes(GameStateCodec.toBytes(game)).toFen());
+
+        game = ChessGame.fromFen("4k3/8/8/3Pp3/8/8/8/4K3 w - e6 0 1");
+        Assertions.assertEquals("4k3/8/8/3Pp3/8/8/8/4K3 w - e6 0 1", game.toFen());
+    }
+
+    @Test
+    @DisplayName("Clock fields are optional")
+    public void optionalClocks() {
+        ChessGame game = ChessGame.fromFen("8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 b -  -");
+        Assertions.assertEquals(ChessGame.TeamColor.BLACK, game.getTeamTurn());
+        Assertions.assertEquals("8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 b - - 0 1", game.toFen());
+    }
+
+    @Test
+    @DisplayName("Clocks up to the widths the state keeps are read exactly")
+    public void largestClocks() {
+        String fen = "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 b - - 255 16383";
+        Assertions.assertEquals(fen, ChessGame.fromFen(fen).toFen());
+    }
+
+    @Test
+    @DisplayName("Malformed FEN is rejected")
+    public void rejectsMalformed() {
+        String[] bad = {
+                "",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP w KQkq - 0 1",
+                "rnbqkbnr/pppppppp/9/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNX w KQkq - 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR x KQkq - 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQxq - 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq e4 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1 extra",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 256 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 16384",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 4294967296 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - -1 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - +1 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0x 1",
+        };
+        for (String fen : bad) {
+            Assertions.assertThrows(IllegalArgumentException.class, () -> ChessGame.fromFen(fen), fen);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class LegalMoveCacheTests {
+
+    @Test
+    @DisplayName("Counts hits and misses")
+    public void countsHitsAndMisses() {
+        LegalMoveCache cache = new LegalMoveCache(64);
+        int[] moves = {1, 2, 3};
+
+        Assertions.assertNull(cache.get(42L, 0L, 0));
+        cache.put(42L, 0L, 0, moves);
+        Assertions.assertSame(moves, cache.get(42L, 0L, 0));
+
+        Assertions.assertEquals(1, cache.hits());
+        Assertions.assertEquals(1, cache.misses());
+        Assertions.assertEquals(0.5, cache.hitRate());
+    }
+
+    @Test
+    @DisplayName("Stays within capacity and keeps recently used entries")
+    public void evictsUnreferencedEntries() {
+        LegalMoveCache cache = new LegalMoveCache(4);
+        Assertions.assertEquals(4, cache.capacity());
+        for (long key = 0; key < 4; key++) {
+            cache.put(key, 0L, 0, new int[]{(int) key});
+        }
+        cache.get(0L, 0L, 0);
+
+        for (long key = 4; key < 7; key++) {
+            cache.put(key, 0L, 0, new int[]{(int) key});
+        }
+        Assertions.assertNotNull(cache.get(0L, 0L, 0), "Referenced entry was evicted first");
+        Assertions.assertNotNull(cache.get(6L, 0L, 0));
+    }
+
+    @Test
+    @DisplayName("Colliding keys of different positions miss")
+    public void verifiesPosition() {
+        LegalMoveCache cache = new LegalMoveCache(64);
+        ChessGame game = new ChessGame();
+        long occupancy = game.getBoard().getOccupied();
+        int position = LegalMoveCache.position(game.getState(), ChessGame.TeamColor.WHITE);
+        int[] moves = {1, 2, 3};
+        cache.put(7L, occupancy, position, moves);
+
+        Assertions.assertSame(moves, cache.get(7L, occupancy, position));
+        Assertions.assertNull(cache.get(7L, occupancy & ~1L, position));
+        Assertions.assertNull(cache.get(7L, occupancy,
+                LegalMoveCache.position(game.getState(), ChessGame.TeamColor.BLACK)));
+        Assertions.assertNull(cache.get(7L, occupancy,
+                LegalMoveCache.position(PackedState.INITIAL & ~PackedState.WHITE_KINGSIDE, ChessGame.TeamColor.WHITE)));
+    }
+
+    @Test
+    @DisplayName("Disabled cache stores nothing")
+    public void disabledCacheStoresNothing() {
+        LegalMoveCache cache = new LegalMoveCache(0);
+        cache.put(1L, 0L, 0, new int[0]);
+        Assertions.assertFalse(cache.isEnabled());
+        Assertions.assertNull(cache.get(1L, 0L, 0));
+    }
+
+    @Test
+    @DisplayName("Games share cached moves for the same position")
+    public void gamesShareCachedMoves() throws InvalidMoveException {
+        ChessGame first = new ChessGame();
+        first.makeMove(new ChessMove(ChessPosition.of(2, 5), ChessPosition.of(4, 5), null));
+        ChessGame second = new ChessGame();
+        second.makeMove(new ChessMove(ChessPosition.of(2, 5), ChessPosition.of(4, 5), null));
+
+        first.getGameStatus();
+        long hits = LegalMoveCache.shared().hits();
+        Assertions.assertEquals(ChessGame.GameStatus.NORMAL, second.getGameStatus());
+        Assertions.assertTrue(LegalMoveCache.shared().hits() > hits);
+    }
+}
@@ -0,0 +1,90 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+public class LegalMoveGeneratorTests {
+
+    @Test
+    @DisplayName("Legal generator matches validMoves over random games")
+    public void matchesValidMovesInRandomGames() {
+        Random random = new Random(42);
+        for (int gameNumber = 0; gameNumber < 200; gameNumber++) {
+            ChessGame game = new ChessGame();
+            for (int ply = 0; ply < 120; ply++) {
+                for (ChessGame.TeamColor color : ChessGame.TeamColor.values()) {
+                    long pieces = game.getBoard().getOccupancy(color);
+                    while (pieces != 0) {
+                        int square = Long.numberOfTrailingZeros(pieces);
+                        pieces &= pieces - 1;
+                        ChessPosition position = ChessPosition.of(square);
+                        MoveList reference = new MoveList();
+                        game.validMoves(square, reference);
+                        Assertions.assertEquals(reference.toChessMoves(), game.legalMoves(position),
+                                "Moves differ for " + position + " in\n" + BoardPrinter.boardString(game.getBoard()));
+                        Assertions.assertEquals(reference.toChessMoves(), game.validMoves(position),
+                                "Cached moves differ for " + position);
+                    }
+                }
+
+                MoveList moves = new MoveList();
+                game.legalMoves(game.getTeamTurn(), moves);
+                if (moves.isEmpty()) break;
+                game.doMove(moves.get(random.nextInt(moves.size())));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Move generation and undo leave the board's own piece objects in place")
+    public void undoRestoresPieceObjects() {
+        ChessGame game = ChessGame.fromFen("4k3/8/8/3p4/4P3/8/8/4K3 w - - 0 1");
+        ChessBoard board = game.getBoard();
+        ChessPiece white = board.getPiece(new ChessPosition(4, 5));
+        ChessPiece black = board.getPiece(new ChessPosition(5, 4));
+
+        game.validMoves(new ChessPosition(4, 5));
+        game.validMoves(new ChessPosition(5, 4));
+        game.validMoves(ChessBoard.squareIndex(4, 5), new MoveList());
+        Assertions.assertSame(white, board.getPiece(new ChessPosition(4, 5)));
+        Assertions.assertSame(black, board.getPiece(new ChessPosition(5, 4)));
+        Assertions.assertEquals(new ChessPosition(4, 5), white.getPiecePosition());
+        Assertions.assertEquals(new ChessPosition(5, 4), black.getPiecePosition());
+
+        game = ChessGame.fromFen("3rk3/2P5/8/8/8/8/8/4K3 w - - 0 1");
+        board = game.getBoard();
+        ChessPiece pawn = board.getPiece(new ChessPosition(7, 3));
+        ChessPiece rook = board.getPiece(new ChessPosition(8, 4));
+        game.doMove(PackedMove.encode(ChessBoard.squareIndex(7, 3), ChessBoard.squareIndex(8, 4), ChessPiece.PieceType.QUEEN));
+        game.undoMove();
+        Assertions.assertSame(pawn, board.getPiece(new ChessPosition(7, 3)));
+        Assertions.assertSame(rook, board.getPiece(new ChessPosition(8, 4)));
+        Assertions.assertEquals(new ChessPosition(7, 3), pawn.getPiecePosition());
+    }
+
+    @Test
+    @DisplayName("Off-board positions are rejected rather than read as another square")
+    public void offBoardPositionsAreRejected() {
+        ChessGame game = new ChessGame();
+        // (1, 9) would otherwise index a2
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> game.validMoves(new ChessPosition(1, 9)));
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> game.legalMoves(new ChessPosition(0, 1)));
+        Assertions.assertTrue(game.validMoves(new ChessPosition(4, 4)).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Moves with an off-board end are invalid, not a crash")
+    public void offBoardMovesAreInvalid() {
+        ChessGame game = new ChessGame();
+        Assertions.assertThrows(InvalidMoveException.class,
+                () -> game.makeMove(new ChessMove(new ChessPosition(1, 2), new ChessPosition(2, 9), null)));
+        Assertions.assertThrows(InvalidMoveException.class,
+                () -> game.makeMove(new ChessMove(new ChessPosition(0, 2), new ChessPosition(3, 3), null)));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> PackedMove.fromChessMove(new ChessMove(new ChessPosition(1, 2), new ChessPosition(2, 9), null)));
+        Assertions.assertEquals(ChessGame.TeamColor.WHITE, game.getTeamTurn());
+    }
+}
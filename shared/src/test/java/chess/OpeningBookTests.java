@@ -0,0 +1,183 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+public class OpeningBookTests {
+
+    private static final String PGN = """
+            [Event "Casual"]
+            [White "A"]
+            [Black "B"]
+            [Result "1-0"]
+
+            1. e4 e5 2. Nf3 {the main line} Nc6 3. Bb5 a6 (3... Nf6 4. O-O) 4. Ba4 Nf6
+            5. O-O $1 Be7 1-0
+
+            [Result "1/2-1/2"]
+            1. e4 c5; the Sicilian
+            2. Nf3 d6 1/2-1/2
+
+            [Result "0-1"]
+            1.d4 d5 2.c4 dxc4 3.e4?! b5 0-1
+
+            [Result "1-0"]
+            [FEN "4k3/P7/8/8/8/8/8/4K3 w - - 0 1"]
+            [SetUp "1"]
+            1. a8=Q+ Kd7 1-0
+
+            [Result "*"]
+            1. e4 Nc6 2. Nf3 *
+            """;
+
+    @Test
+    @DisplayName("Book moves and weights follow the games")
+    public void buildAndLookup(@TempDir Path dir) throws IOException {
+        OpeningBook book = build(dir, PGN, OpeningBookBuilder.DEFAULT_PLIES);
+
+        Map<ChessMove, Integer> start = weights(book, new ChessGame());
+        // e4 won once, drew once and was left unfinished once; d4 only lost
+        Assertions.assertEquals(Map.of(move(2, 5, 4, 5, null), 4), start);
+
+        // e5 only lost, so it is left out
+        Map<ChessMove, Integer> afterE4 = weights(book, play("e4"));
+        Assertions.assertEquals(Map.of(move(7, 3, 5, 3, null), 1, move(8, 2, 6, 3, null), 1), afterE4);
+
+        // the variation and the comments were skipped, castling came through
+        Map<ChessMove, Integer> castle = weights(book, play("e4", "e5", "Nf3", "Nc6", "Bb5", "a6", "Ba4", "Nf6"));
+        Assertions.assertEquals(Map.of(move(1, 5, 1, 7, null), 2), castle);
+
+        Map<ChessMove, Integer> promotion = weights(book, ChessGame.fromFen("4k3/P7/8/8/8/8/8/4K3 w - - 0 1"));
+        Assertions.assertEquals(Map.of(move(7, 1, 8, 1, ChessPiece.PieceType.QUEEN), 2), promotion);
+
+        Assertions.assertTrue(book.lookup(play("a3")).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Only the first plies are kept and bad games are counted")
+    public void pliesAndSkips(@TempDir Path dir) throws IOException {
+        OpeningBookBuilder builder = new OpeningBookBuilder(2);
+        builder.addPgn(new StringReader(PGN + "\n1. e4 e5 2. Qh5 Nc6 3. Bc4 Nf6 4. Qxg7 1-0\n1. e5 *\n"));
+        Assertions.assertEquals(7, builder.gamesRead());
+        Assertions.assertEquals(1, builder.gamesSkipped());
+
+        Path path = dir.resolve("short.bin");
+        builder.write(path);
+        OpeningBook book = OpeningBook.open(path);
+        Assertions.assertTrue(book.lookup(play("e4", "e5")).isEmpty());
+        Assertions.assertFalse(book.lookup(play("e4")).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Every position of many games is found again")
+    public void manyPositions(@TempDir Path dir) throws IOException {
+        // random games written with fully disambiguated SAN; black's moves all lose, so only white's are kept
+        Random random = new Random(3);
+        StringBuilder pgn = new StringBuilder();
+        List<ChessGame> seen = new ArrayList<>();
+        for (int g = 0; g < 200; g++) {
+            ChessGame game = new ChessGame();
+            MoveList moves = new MoveList();
+            for (int ply = 0; ply < 10; ply++) {
+                moves.clear();
+                game.legalMoves(game.getTeamTurn(), moves);
+                if (moves.isEmpty()) break;
+                int move = moves.get(random.nextInt(moves.size()));
+                seen.add(game.copy());
+                pgn.append(longSan(game, move)).append(' ');
+                game.doMove(move);
+            }
+            pgn.append("1-0\n\n");
+        }
+        OpeningBook book = build(dir, pgn.toString(), 10);
+        Assertions.assertTrue(book.size() > 500);
+        for (ChessGame game : seen) {
+            if (game.getTeamTurn() == ChessGame.TeamColor.WHITE) {
+                Assertions.assertFalse(book.lookup(game).isEmpty(), game.toFen());
+            }
+        }
+        Assertions.assertNotNull(book.pick(new ChessGame(), new Random(1)));
+    }
+
+    @Test
+    @DisplayName("Files that are not books are rejected")
+    public void rejectsBadFile(@TempDir Path dir) throws IOException {
+        Path path = dir.resolve("odd.bin");
+        Files.write(path, new byte[17]);
+        Assertions.assertThrows(IOException.class, () -> OpeningBook.open(path));
+    }
+
+    @Test
+    @DisplayName("SAN is resolved against the legal moves")
+    public void san() {
+        ChessGame game = ChessGame.fromFen("r3k2r/8/8/8/8/2N3N1/8/R3K2R w KQkq - 0 1");
+        Assertions.assertEquals(PackedMove.encode(18, 28, null), San.parse(game, "Nce4"));
+        Assertions.assertEquals(PackedMove.encode(22, 28, null), San.parse(game, "Nge4+"));
+        Assertions.assertEquals(PackedMove.encode(4, 2, null), San.parse(game, "O-O-O"));
+        Assertions.assertEquals(PackedMove.encode(4, 6, null), San.parse(game, "0-0"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> San.parse(game, "Ne4"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> San.parse(game, "Nd6"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> San.parse(game, "Zz9"));
+
+        ChessGame pawns = ChessGame.fromFen("1n2k3/P7/8/3pP3/8/8/8/4K3 w - d6 0 1");
+        Assertions.assertEquals(PackedMove.encode(36, 43, null), San.parse(pawns, "exd6"));
+        Assertions.assertEquals(PackedMove.encode(48, 57, ChessPiece.PieceType.KNIGHT), San.parse(pawns, "axb8N"));
+        Assertions.assertEquals(PackedMove.encode(48, 56, ChessPiece.PieceType.ROOK), San.parse(pawns, "a8=R"));
+    }
+
+    private static OpeningBook build(Path dir, String pgn, int plies) throws IOException {
+        OpeningBookBuilder builder = new OpeningBookBuilder(plies);
+        builder.addPgn(new StringReader(pgn));
+        Path path = dir.resolve("book.bin");
+        builder.write(path);
+        OpeningBook book = OpeningBook.open(path);
+        Assertions.assertEquals(Files.size(path) / 16, book.size());
+        return book;
+    }
+
+    private static Map<ChessMove, Integer> weights(OpeningBook book, ChessGame game) {
+        return book.lookup(game).stream().collect(Collectors.toMap(OpeningBook.Entry::move, OpeningBook.Entry::weight));
+    }
+
+    private static ChessGame play(String... sans) {
+        ChessGame game = new ChessGame();
+        for (String san : sans) {
+            game.doMove(San.parse(game, san));
+        }
+        return game;
+    }
+
+    private static ChessMove move(int fromRow, int fromCol, int toRow, int toCol, ChessPiece.PieceType promotion) {
+        return new ChessMove(ChessPosition.of(fromRow, fromCol), ChessPosition.of(toRow, toCol), promotion);
+    }
+
+    // piece letter, full start square and target: never ambiguous
+    private static String longSan(ChessGame game, int move) {
+        ChessPiece piece = game.getBoard().getPiece(PackedMove.from(move));
+        String letters = "KQBNR";
+        StringBuilder san = new StringBuilder();
+        if (piece.getPieceType() != ChessPiece.PieceType.PAWN) {
+            san.append(letters.charAt(piece.getPieceType().ordinal()));
+        }
+        san.append(square(PackedMove.from(move))).append(square(PackedMove.to(move)));
+        ChessPiece.PieceType promotion = PackedMove.promotion(move);
+        if (promotion != null) san.append('=').append(letters.charAt(promotion.ordinal()));
+        return san.toString();
+    }
+
+    private static String square(int square) {
+        return "" + (char) ('a' + (square & 7)) + (char) ('1' + (square >>> 3));
+    }
+}
@@ -0,0 +1,67 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Perft regression suite. The quick checks run with every build; the full published
+ * depths are tagged "perft" and run with {@code mvn test -Pperft}.
+ */
+public class PerftTests {
+
+    private static final long QUICK_NODE_LIMIT = 10_000;
+
+    @Test
+    @DisplayName("Standard positions match published counts (quick)")
+    public void standardPositionsQuick() {
+        for (Perft.Position position : Perft.STANDARD_POSITIONS) {
+            for (int depth = 1; depth <= position.expected().length; depth++) {
+                long expected = position.expected()[depth - 1];
+                if (expected > QUICK_NODE_LIMIT) break;
+                Assertions.assertEquals(expected, Perft.perft(position.toGame(), depth),
+                        position.name() + " depth " + depth);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Legal generator agrees with the validMoves reference")
+    public void legalGeneratorMatchesReference() {
+        for (Perft.Position position : Perft.STANDARD_POSITIONS) {
+            ChessGame game = position.toGame();
+            Assertions.assertEquals(Perft.perftReference(game, 3), Perft.perft(game, 3), position.name());
+        }
+    }
+
+    @Test
+    @DisplayName("Parallel perft matches the sequential count and divide")
+    public void parallelMatchesSequential() {
+        ChessGame game = Perft.STANDARD_POSITIONS.get(0).toGame();
+        try (var pool = new ForkJoinPool(4)) {
+            ParallelPerft.Result result = ParallelPerft.run(game, 4, 2, pool);
+            Assertions.assertEquals(Perft.perft(game, 4), result.nodes());
+            Assertions.assertEquals(Perft.divide(game, 4), result.divide());
+        }
+    }
+
+    @Test
+    @Tag("perft")
+    @DisplayName("Standard positions match published counts (full depth)")
+    public void standardPositionsFull() {
+        for (Perft.Position position : Perft.STANDARD_POSITIONS) {
+            ChessGame game = position.toGame();
+            for (int depth = 1; depth <= position.expected().length; depth++) {
+                long start = System.nanoTime();
+                long nodes = Perft.perft(game, depth);
+                long elapsed = System.nanoTime() - start;
+                System.out.printf("%s depth %d: %d nodes, %.0f nodes/s%n",
+                        position.name(), depth, nodes, nodes / (elapsed / 1e9));
+                Assertions.assertEquals(position.expected()[depth - 1], nodes, position.name() + " depth " + depth);
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class SearchEngineTests {
+
+    @Test
+    @DisplayName("Finds a back-rank mate in one")
+    public void findsMateInOne() {
+        ChessGame game = ChessGame.fromFen("6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1");
+        try (SearchEngine engine = new SearchEngine(1)) {
+            SearchEngine.Result result = engine.search(game, SearchEngine.Limits.depth(3));
+            Assertions.assertEquals(new ChessMove(ChessPosition.of(1, 1), ChessPosition.of(8, 1), null), result.bestMove());
+            Assertions.assertEquals(SearchEngine.MATE_SCORE - 1, result.score());
+            Assertions.assertTrue(SearchEngine.isMateScore(result.score()));
+        }
+    }
+
+    @Test
+    @DisplayName("A mate on the hundredth ply of the fifty-move count is still mate")
+    public void mateBeatsFiftyMoveRule() {
+        ChessGame game = ChessGame.fromFen("6k1/5ppp/8/8/8/8/8/R5K1 w - - 99 80");
+        try (SearchEngine engine = new SearchEngine(1)) {
+            SearchEngine.Result result = engine.search(game, SearchEngine.Limits.depth(3));
+            Assertions.assertEquals(new ChessMove(ChessPosition.of(1, 1), ChessPosition.of(8, 1), null), result.bestMove());
+            Assertions.assertEquals(SearchEngine.MATE_SCORE - 1, result.score());
+        }
+    }
+
+    @Test
+    @DisplayName("Takes a hanging queen")
+    public void winsMaterial() {
+        ChessGame game = ChessGame.fromFen("k7/8/8/3q4/8/8/8/K2R4 w - - 0 1");
+        try (SearchEngine engine = new SearchEngine(1)) {
+            SearchEngine.Result result = engine.search(game, SearchEngine.Limits.depth(4));
+            Assertions.assertEquals(new ChessMove(ChessPosition.of(1, 4), ChessPosition.of(5, 4), null), result.bestMove());
+            Assertions.assertTrue(result.score() > 0);
+            Assertions.assertEquals(result.bestMove(), result.principalVariation().get(0));
+        }
+    }
+
+    @Test
+    @DisplayName("Parallel search returns a legal move and leaves the game untouched")
+    public void parallelSearch() {
+        ChessGame game = Perft.STANDARD_POSITIONS.get(1).toGame();
+        String fen = game.toFen();
+        try (SearchEngine engine = new SearchEngine(4)) {
+            SearchEngine.Result result = engine.search(game, SearchEngine.Limits.depth(4));
+            Assertions.assertTrue(game.legalMoves(result.bestMove().getStartPosition()).contains(result.bestMove()));
+            Assertions.assertTrue(result.depth() >= 4);
+        }
+        Assertions.assertEquals(fen, game.toFen());
+    }
+
+    @Test
+    @DisplayName("A repeated search is answered from the transposition table")
+    public void reusesTable() {
+        ChessGame game = Perft.STANDARD_POSITIONS.get(1).toGame();
+        try (SearchEngine engine = new SearchEngine(1, new TranspositionTable(4, true))) {
+            SearchEngine.Result first = engine.search(game, SearchEngine.Limits.depth(4));
+            SearchEngine.Result second = engine.search(game, SearchEngine.Limits.depth(4));
+            Assertions.assertEquals(first.bestMove(), second.bestMove());
+            Assertions.assertEquals(first.score(), second.score());
+            Assertions.assertTrue(second.nodes() < first.nodes() / 2, first.nodes() + " then " + second.nodes());
+            Assertions.assertTrue(engine.getTranspositionTable().hitRate() > 0);
+        }
+    }
+
+    @Test
+    @DisplayName("Stops at the node budget")
+    public void honoursNodeBudget() {
+        ChessGame game = Perft.STANDARD_POSITIONS.get(1).toGame();
+        try (SearchEngine engine = new SearchEngine(2)) {
+            SearchEngine.Result result = engine.search(game, SearchEngine.Limits.nodes(50_000));
+            Assertions.assertNotNull(result.bestMove());
+            // each thread may overshoot by up to one check interval
+            Assertions.assertTrue(result.nodes() < 50_000 + 2 * 2048, "searched " + result.nodes());
+        }
+    }
+
+    @Test
+    @DisplayName("Can be stopped from another thread")
+    public void stopsOnRequest() throws InterruptedException {
+        ChessGame game = new ChessGame();
+        try (SearchEngine engine = new SearchEngine(2)) {
+            Thread stopper = new Thread(() -> {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException ignored) {
+                }
+                engine.stop();
+            });
+            stopper.start();
+            long start = System.nanoTime();
+            SearchEngine.Result result = engine.search(game, new SearchEngine.Limits(0, 0, 0));
+            stopper.join();
+            Assertions.assertNotNull(result.bestMove());
+            Assertions.assertTrue(System.nanoTime() - start < 5_000_000_000L);
+        }
+    }
+}
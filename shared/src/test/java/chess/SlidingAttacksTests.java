@@ -0,0 +1,63 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+public class SlidingAttacksTests {
+
+    @Test
+    @DisplayName("Magic lookups match the ray walker")
+    public void magicMatchesRayWalk() {
+        Random random = new Random(240);
+        for (int i = 0; i < 2000; i++) {
+            // sparse and dense boards both show up by AND/OR-ing random words
+            long occupancy = (i % 2 == 0) ? random.nextLong() & random.nextLong() : random.nextLong() | random.nextLong();
+            for (int square = 0; square < 64; square++) {
+                Assertions.assertEquals(SlidingAttacks.rookAttacksSlow(square, occupancy),
+                        SlidingAttacks.rookAttacks(square, occupancy), "Rook attacks differ on square " + square);
+                Assertions.assertEquals(SlidingAttacks.bishopAttacksSlow(square, occupancy),
+                        SlidingAttacks.bishopAttacks(square, occupancy), "Bishop attacks differ on square " + square);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("pieceMoves agrees in both slider modes")
+    public void pieceMovesModesAgree() {
+        ChessBoard board = new ChessBoard();
+        board.resetBoard();
+        ChessPosition queenSquare = new ChessPosition(4, 4);
+        ChessPiece queen = new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.QUEEN);
+        board.addPiece(queenSquare, queen);
+
+        boolean previous = ChessPiece.usesMagicSliders();
+        try {
+            ChessPiece.setMagicSliders(false);
+            var reference = queen.pieceMoves(board, queenSquare);
+            ChessPiece.setMagicSliders(true);
+            Assertions.assertEquals(reference, queen.pieceMoves(board, queenSquare));
+        } finally {
+            ChessPiece.setMagicSliders(previous);
+        }
+    }
+
+    @Test
+    @DisplayName("Legal move generation agrees in both slider modes")
+    public void legalMovesModesAgree() {
+        boolean previous = ChessPiece.usesMagicSliders();
+        try {
+            for (Perft.Position position : Perft.STANDARD_POSITIONS) {
+                ChessPiece.setMagicSliders(false);
+                long reference = Perft.perft(position.toGame(), 2);
+                ChessPiece.setMagicSliders(true);
+                Assertions.assertEquals(reference, Perft.perft(position.toGame(), 2), position.name());
+                Assertions.assertEquals(position.expected()[1], reference, position.name());
+            }
+        } finally {
+            ChessPiece.setMagicSliders(previous);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+public class TablebaseTests {
+
+    @TempDir
+    static Path dir;
+    private static Tablebase tablebase;
+
+    @BeforeAll
+    public static void generate() throws IOException {
+        // KBNK takes several times longer than the rest together, so it is left out here
+        TablebaseGenerator.generate(dir, Tablebase.Material.KQK, Tablebase.Material.KRK, Tablebase.Material.KPK);
+        tablebase = Tablebase.open(dir);
+    }
+
+    @Test
+    @DisplayName("Tables hold the known longest mates")
+    public void longestMates() throws IOException {
+        // mate in 10 with the queen and in 16 with the rook, for the stronger side to move
+        Assertions.assertEquals(20, maxValue(Tablebase.Material.KQK, 0));
+        Assertions.assertEquals(32, maxValue(Tablebase.Material.KRK, 0));
+        Assertions.assertTrue(tablebase.has(Tablebase.Material.KPK));
+        Assertions.assertFalse(tablebase.has(Tablebase.Material.KBNK));
+    }
+
+    @Test
+    @DisplayName("Probes give the result for the side to move")
+    public void probe() {
+        Assertions.assertEquals(new Tablebase.Result(Tablebase.Outcome.WIN, 1),
+                tablebase.probe(ChessGame.fromFen("k7/8/1K6/8/8/8/8/7R w - - 0 1")));
+        Assertions.assertEquals(new Tablebase.Result(Tablebase.Outcome.LOSS, 2),
+                tablebase.probe(ChessGame.fromFen("k7/8/1K6/8/8/8/8/6R1 b - - 0 1")));
+        Assertions.assertEquals(new Tablebase.Result(Tablebase.Outcome.LOSS, 0),
+                tablebase.probe(ChessGame.fromFen("R1k5/8/2K5/8/8/8/8/8 b - - 0 1")));
+
+        // the pawn wins with the king in front of it, and is lost when the king can take it
+        Assertions.assertEquals(Tablebase.Outcome.WIN,
+                tablebase.probe(ChessGame.fromFen("4k3/8/4K3/4P3/8/8/8/8 w - - 0 1")).outcome());
+        Assertions.assertEquals(Tablebase.Outcome.DRAW,
+                tablebase.probe(ChessGame.fromFen("8/8/8/8/8/8/kP6/7K b - - 0 1")).outcome());
+
+        // black in check with white to move, and kings side by side
+        Assertions.assertNull(tablebase.probe(ChessGame.fromFen("k7/8/8/8/8/8/8/Q6K w - - 0 1")));
+        Assertions.assertNull(tablebase.probe(ChessGame.fromFen("8/8/8/3kK3/8/8/8/7Q b - - 0 1")));
+        Assertions.assertNull(tablebase.bestMove(ChessGame.fromFen("k7/8/8/8/8/8/8/Q6K w - - 0 1")));
+
+        Assertions.assertNull(tablebase.probe(new ChessGame()));
+        Assertions.assertNull(tablebase.probe(ChessGame.fromFen("4k3/8/8/8/8/8/8/RN2K3 w - - 0 1")));
+        Assertions.assertNull(tablebase.probe(ChessGame.fromFen("4k3/8/8/8/8/8/8/R3K3 w Q - 0 1")));
+    }
+
+    @Test
+    @DisplayName("Black as the stronger side is probed from the other end")
+    public void mirrored() {
+        String[][] pairs = {
+                {"k7/8/1K6/8/8/8/8/6R1 b - - 0 1", "6r1/8/8/8/8/1k6/8/K7 w - - 0 1"},
+                {"8/8/3k4/8/5Q2/8/8/1K6 w - - 0 1", "1k6/8/8/5q2/8/3K4/8/8 b - - 0 1"},
+                {"4k3/8/4K3/4P3/8/8/8/8 b - - 0 1", "8/8/8/8/4p3/4k3/8/4K3 w - - 0 1"},
+                {"8/8/8/8/8/8/kP6/7K b - - 0 1", "7k/Kp6/8/8/8/8/8/8 w - - 0 1"},
+        };
+        for (String[] pair : pairs) {
+            Assertions.assertEquals(tablebase.probe(ChessGame.fromFen(pair[0])),
+                    tablebase.probe(ChessGame.fromFen(pair[1])), pair[0]);
+        }
+    }
+
+    @Test
+    @DisplayName("Best moves mate in exactly the number of plies probed")
+    public void bestMovesMate() {
+        Random random = new Random(5);
+        int played = 0;
+        while (played < 40) {
+            ChessGame game = randomPosition(random, random.nextBoolean() ? "Q" : "R");
+            Tablebase.Result result = tablebase.probe(game);
+            if (result == null || result.outcome() == Tablebase.Outcome.DRAW) continue;
+            played++;
+
+            for (int ply = 0; ply < result.plies(); ply++) {
+                ChessMove move = tablebase.bestMove(game);
+                Assertions.assertNotNull(move, game.toFen());
+                game.doMove(PackedMove.fromChessMove(move));
+            }
+            Assertions.assertTrue(game.isInCheckmate(game.getTeamTurn()), game.toFen());
+            Assertions.assertNull(tablebase.bestMove(game));
+        }
+    }
+
+    private static int maxValue(Tablebase.Material material, int sideToMove) throws IOException {
+        byte[] table = Files.readAllBytes(dir.resolve(material.fileName()));
+        int half = table.length / 2;
+        int max = 0;
+        for (int i = sideToMove * half; i < (sideToMove + 1) * half; i++) {
+            int value = table[i] & 0xFF;
+            if (value != Tablebase.ILLEGAL_VALUE) max = Math.max(max, value);
+        }
+        return max;
+    }
+
+    // kings and one piece on distinct random squares, either color stronger, either side to move
+    private static ChessGame randomPosition(Random random, String piece) {
+        while (true) {
+            char[] squares = new char[64];
+            String strong = "K" + piece;
+            String pieces = random.nextBoolean() ? strong + "k" : strong.toLowerCase() + "K";
+            boolean clash = false;
+            for (char p : pieces.toCharArray()) {
+                int square = random.nextInt(64);
+                clash |= squares[square] != 0;
+                squares[square] = p;
+            }
+            if (clash) continue;
+            StringBuilder fen = new StringBuilder();
+            for (int rank = 7; rank >= 0; rank--) {
+                int empty = 0;
+                for (int file = 0; file < 8; file++) {
+                    char p = squares[rank * 8 + file];
+                    if (p == 0) {
+                        empty++;
+                        continue;
+                    }
+                    if (empty > 0) fen.append(empty);
+                    empty = 0;
+                    fen.append(p);
+                }
+                if (empty > 0) fen.append(empty);
+                if (rank > 0) fen.append('/');
+            }
+            fen.append(random.nextBoolean() ? " w" : " b").append(" - - 0 1");
+            try {
+                ChessGame game = ChessGame.fromFen(fen.toString());
+                // the side not to move must not be in check
+                ChessGame.TeamColor waiting = ChessGame.opposite(game.getTeamTurn());
+                if (!game.isInCheck(waiting)) return game;
+            } catch (IllegalArgumentException e) {
+                // positions the parser rejects are drawn again
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+
+public class TranspositionTableTests {
+
+    @Test
+    @DisplayName("Stored fields read back")
+    public void storeAndProbe() {
+        TranspositionTable table = new TranspositionTable(1, true);
+        int move = PackedMove.encode(52, 60, ChessPiece.PieceType.KNIGHT);
+        table.store(0x1234_5678_9ABC_DEF0L, move, -29_950, 17, TranspositionTable.LOWER);
+
+        long entry = table.probe(0x1234_5678_9ABC_DEF0L);
+        Assertions.assertNotEquals(0, entry);
+        Assertions.assertEquals(move, TranspositionTable.move(entry));
+        Assertions.assertEquals(-29_950, TranspositionTable.score(entry));
+        Assertions.assertEquals(17, TranspositionTable.depth(entry));
+        Assertions.assertEquals(TranspositionTable.LOWER, TranspositionTable.bound(entry));
+
+        Assertions.assertEquals(0, table.probe(0x1234_5678_9ABC_DEF1L));
+        Assertions.assertEquals(1, table.hits());
+        Assertions.assertEquals(1, table.misses());
+    }
+
+    @Test
+    @DisplayName("Restoring a position without a move keeps the old move")
+    public void keepsMove() {
+        TranspositionTable table = new TranspositionTable(1, true);
+        int move = PackedMove.encode(12, 28, null);
+        table.store(42L, move, 10, 3, TranspositionTable.EXACT);
+        table.store(42L, 0, -5, 4, TranspositionTable.UPPER);
+
+        long entry = table.probe(42L);
+        Assertions.assertEquals(move, TranspositionTable.move(entry));
+        Assertions.assertEquals(-5, TranspositionTable.score(entry));
+        Assertions.assertEquals(4, TranspositionTable.depth(entry));
+    }
+
+    @Test
+    @DisplayName("A full bucket replaces its shallowest entry and counts bucket misses")
+    public void replacement() {
+        TranspositionTable table = new TranspositionTable(1, true);
+        // same high half, so the same bucket
+        long deep = 7L << 32;
+        long shallow = (7L << 32) | 1;
+        long incoming = (7L << 32) | 2;
+        table.store(deep, 1, 0, 9, TranspositionTable.EXACT);
+        table.store(shallow, 2, 0, 1, TranspositionTable.EXACT);
+        table.store(incoming, 3, 0, 5, TranspositionTable.EXACT);
+
+        Assertions.assertNotEquals(0, table.probe(deep));
+        Assertions.assertNotEquals(0, table.probe(incoming));
+        Assertions.assertEquals(0, table.probe(shallow));
+        Assertions.assertEquals(1, table.bucketMisses());
+
+        table.newSearch();
+        table.store(shallow, 2, 0, 1, TranspositionTable.EXACT);
+        // both old entries aged; the shallower of them went
+        Assertions.assertNotEquals(0, table.probe(deep));
+        Assertions.assertEquals(0, table.probe(incoming));
+
+        table.clear();
+        Assertions.assertEquals(0, table.probe(deep));
+        Assertions.assertEquals(1, table.misses());
+    }
+
+    @Test
+    @DisplayName("Concurrent writers never produce a torn entry")
+    public void concurrentAccess() throws InterruptedException {
+        TranspositionTable table = new TranspositionTable(1, true);
+        // few keys in few buckets so threads keep overwriting each other's entries
+        long[] keys = new long[64];
+        SplittableRandom random = new SplittableRandom(1);
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = ((long) (i & 3) << 32) | (random.nextLong() & 0xFFFF_0000L);
+        }
+
+        List<Thread> threads = new ArrayList<>();
+        List<String> failures = Collections.synchronizedList(new ArrayList<>());
+        for (int t = 0; t < 4; t++) {
+            final int seed = t;
+            Thread thread = new Thread(() -> {
+                SplittableRandom rng = new SplittableRandom(seed);
+                for (int n = 0; n < 200_000; n++) {
+                    long key = keys[rng.nextInt(keys.length)];
+                    if (rng.nextBoolean()) {
+                        // every field derived from the key, so a mix of two stores is detectable
+                        table.store(key, expectedMove(key), expectedScore(key), 1 + rng.nextInt(20), TranspositionTable.EXACT);
+                    } else {
+                        long entry = table.probe(key);
+                        if (entry != 0 && (TranspositionTable.move(entry) != expectedMove(key)
+                                || TranspositionTable.score(entry) != expectedScore(key))) {
+                            failures.add(Long.toHexString(key));
+                        }
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assertions.assertEquals(List.of(), failures);
+        Assertions.assertTrue(table.hits() > 0);
+    }
+
+    private static int expectedMove(long key) {
+        return (int) (key >>> 16) & 0x7FFF;
+    }
+
+    private static int expectedScore(long key) {
+        return (short) (key >>> 20);
+    }
+
+    @Test
+    @DisplayName("Size follows the requested memory")
+    public void sizing() {
+        Assertions.assertEquals(1 << 16, new TranspositionTable(1).capacity());
+        Assertions.assertEquals(1 << 18, new TranspositionTable(5).capacity());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new TranspositionTable(0));
+    }
+
+    @Test
+    @DisplayName("Without statistics probes count nothing")
+    public void noStatistics() {
+        TranspositionTable quiet = new TranspositionTable(1, false);
+        quiet.store(5L, 1, 0, 1, TranspositionTable.EXACT);
+        Assertions.assertNotEquals(0, quiet.probe(5L));
+        Assertions.assertEquals(0, quiet.probe(6L));
+        Assertions.assertEquals(0, quiet.hits() + quiet.misses());
+        Assertions.assertFalse(quiet.keepsStatistics());
+    }
+}
@@ -0,0 +1,103 @@
+package serialization;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import chess.InvalidMoveException;
+import chess.PackedState;
+import chess.Perft;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+public class GameStateCodecTests {
+
+    @Test
+    @DisplayName("Standard positions round trip")
+    public void standardPositionsRoundTrip() {
+        for (Perft.Position position : Perft.STANDARD_POSITIONS) {
+            ChessGame game = position.toGame();
+            byte[] bytes = GameStateCodec.toBytes(game);
+            Assertions.assertEquals(GameStateCodec.BASE_BYTES, bytes.length, position.name());
+
+            ChessGame decoded = GameStateCodec.fromBytes(bytes);
+            Assertions.assertEquals(game, decoded, position.name());
+            Assertions.assertEquals(position.fen(), decoded.toFen(), position.name());
+        }
+    }
+
+    @Test
+    @DisplayName("History, en passant and clocks survive a round trip")
+    public void stateRoundTrip() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        game.makeMove(new ChessMove(ChessPosition.of(1, 7), ChessPosition.of(3, 6), null));
+        game.makeMove(new ChessMove(ChessPosition.of(7, 4), ChessPosition.of(5, 4), null));
+        game.makeMove(new ChessMove(ChessPosition.of(3, 6), ChessPosition.of(1, 7), null));
+
+        ByteBuffer buffer = ByteBuffer.allocate(GameStateCodec.encodedSize(game) + 8);
+        buffer.putLong(42L);
+        GameStateCodec.encode(game, buffer);
+        Assertions.assertEquals(buffer.capacity(), buffer.position());
+
+        buffer.flip();
+        Assertions.assertEquals(42L, buffer.getLong());
+        ChessGame decoded = GameStateCodec.decode(buffer);
+        Assertions.assertFalse(buffer.hasRemaining());
+        Assertions.assertEquals(game.toFen(), decoded.toFen());
+        Assertions.assertArrayEquals(game.getPositionHistory(), decoded.getPositionHistory());
+        Assertions.assertEquals(game.getZobristKey(), decoded.getZobristKey());
+    }
+
+    @Test
+    @DisplayName("Truncated or unknown data is rejected")
+    public void rejectsBadInput() {
+        byte[] bytes = GameStateCodec.toBytes(new ChessGame());
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> GameStateCodec.fromBytes(java.util.Arrays.copyOf(bytes, 20)));
+
+        bytes[0] = 99;
+        Assertions.assertThrows(IllegalArgumentException.class, () -> GameStateCodec.fromBytes(bytes));
+    }
+
+    @Test
+    @DisplayName("State words that do not fit the board are rejected")
+    public void rejectsInconsistentState() {
+        // white to move, so an en passant target must be on the sixth rank behind a black pawn
+        ChessGame game = ChessGame.fromFen("4k3/8/8/3pP3/8/8/8/4K2R w K d6 0 1");
+        Assertions.assertEquals(game.toFen(), GameStateCodec.fromBytes(GameStateCodec.toBytes(game)).toFen());
+
+        int state = game.getState();
+        int[] corrupt = {
+                PackedState.encode(PackedState.WHITE_KINGSIDE, 19, 0, 1),
+                PackedState.encode(PackedState.WHITE_KINGSIDE, 42, 0, 1),
+                PackedState.encode(PackedState.WHITE_QUEENSIDE, PackedState.enPassant(state), 0, 1),
+                PackedState.encode(PackedState.WHITE_KINGSIDE, PackedState.enPassant(state), 0, 0),
+        };
+        for (int bad : corrupt) {
+            byte[] bytes = GameStateCodec.toBytes(game);
+            ByteBuffer.wrap(bytes).putInt(34, bad);
+            Assertions.assertThrows(IllegalArgumentException.class, () -> GameStateCodec.fromBytes(bytes),
+                    Integer.toHexString(bad));
+        }
+    }
+
+    @Test
+    @DisplayName("A full history fits the largest encoding")
+    public void fullHistory() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        // knights out and back, far past the history's capacity
+        ChessPosition[][] shuffle = {
+                {ChessPosition.of(1, 7), ChessPosition.of(3, 6)}, {ChessPosition.of(8, 7), ChessPosition.of(6, 6)},
+                {ChessPosition.of(3, 6), ChessPosition.of(1, 7)}, {ChessPosition.of(6, 6), ChessPosition.of(8, 7)},
+        };
+        for (int ply = 0; ply < 200; ply++) {
+            ChessPosition[] move = shuffle[ply % 4];
+            game.makeMove(new ChessMove(move[0], move[1], null));
+        }
+        byte[] bytes = GameStateCodec.toBytes(game);
+        Assertions.assertEquals(GameStateCodec.MAX_BYTES, bytes.length);
+        Assertions.assertArrayEquals(game.getPositionHistory(), GameStateCodec.fromBytes(bytes).getPositionHistory());
+    }
+}